@@ -0,0 +1,70 @@
+package net.meyfa.jciph.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.meyfa.jciph.hashing.Sha256;
+
+
+/**
+ * Measures hashing a batch of {@link #count} independent messages of
+ * {@link #size} bytes each, one by one versus with the batch APIs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark
+{
+    @Param({ "1024" })
+    public int count;
+
+    @Param({ "40", "100", "1024" })
+    public int size;
+
+    private byte[][] messages;
+
+    private Sha256 sha256;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        Random random = new Random(42);
+        messages = new byte[count][size];
+        for (byte[] message : messages) {
+            random.nextBytes(message);
+        }
+
+        sha256 = new Sha256();
+    }
+
+    @Benchmark
+    public void sha256OneByOne(Blackhole bh)
+    {
+        for (byte[] message : messages) {
+            bh.consume(sha256.hash(message));
+        }
+    }
+
+    @Benchmark
+    public byte[][] sha256HashAll()
+    {
+        return Sha256.hashAll(messages);
+    }
+}
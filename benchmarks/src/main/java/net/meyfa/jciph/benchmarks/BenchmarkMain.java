@@ -0,0 +1,29 @@
+package net.meyfa.jciph.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Entry point of the benchmarks jar. Accepts the usual JMH command line
+ * options and always enables the GC profiler, so that allocations per hash are
+ * reported next to the throughput.
+ */
+public class BenchmarkMain
+{
+    public static void main(String[] args)
+            throws CommandLineOptionException, RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
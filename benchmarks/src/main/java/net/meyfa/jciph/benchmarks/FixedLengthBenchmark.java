@@ -0,0 +1,94 @@
+package net.meyfa.jciph.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.meyfa.jciph.hashing.Sha256;
+
+
+/**
+ * Measures hashing 32- and 64-byte inputs, as in hash chains and Merkle
+ * trees, through the generic API versus the fixed-length entry points.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedLengthBenchmark
+{
+    private byte[] in32;
+    private byte[] in64;
+    private byte[] out;
+
+    private Sha256 sha256;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        Random random = new Random(42);
+        in32 = new byte[32];
+        in64 = new byte[64];
+        random.nextBytes(in32);
+        random.nextBytes(in64);
+        out = new byte[32];
+
+        sha256 = new Sha256();
+    }
+
+    @Benchmark
+    public byte[] genericHash32()
+    {
+        sha256.hash(in32, 0, 32, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] hash32()
+    {
+        Sha256.hash32(in32, 0, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] genericHash64()
+    {
+        sha256.hash(in64, 0, 64, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] hash64()
+    {
+        Sha256.hash64(in64, 0, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] genericSha256d()
+    {
+        sha256.hash(in64, 0, 64, out, 0);
+        sha256.hash(out, 0, 32, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] sha256d()
+    {
+        Sha256.sha256d(in64, 0, 64, out, 0);
+        return out;
+    }
+}
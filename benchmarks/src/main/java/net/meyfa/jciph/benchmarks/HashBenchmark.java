@@ -0,0 +1,129 @@
+package net.meyfa.jciph.benchmarks;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.meyfa.jciph.hashing.BlockHashFunction;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+
+
+/**
+ * Measures jciph's hash functions against the JDK's {@link MessageDigest}.
+ *
+ * <p>
+ * Every benchmark hashes a message of {@link #size} bytes per operation. Apart
+ * from the operation rate, the {@link Bytes} counter reports the number of
+ * bytes hashed per second, and the GC profiler (enabled by
+ * {@link BenchmarkMain}) reports the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark
+{
+    /**
+     * Chunk size used by the streaming benchmark.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    @Param({ "SHA-256", "SHA-512" })
+    public String algorithm;
+
+    @Param({ "0", "16", "64", "1024", "16384", "1048576", "67108864" })
+    public int size;
+
+    private byte[] message;
+    private byte[][] chunks;
+
+    private BlockHashFunction function;
+    private MessageDigest jdkDigest;
+
+    /**
+     * Counts the bytes hashed, so that JMH reports throughput in bytes per
+     * second next to the operation rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes
+    {
+        public long bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws NoSuchAlgorithmException
+    {
+        message = new byte[size];
+        new Random(42).nextBytes(message);
+
+        // split the message up front, as a stream consumer would receive it
+        chunks = new byte[(size + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        for (int i = 0; i < chunks.length; ++i) {
+            int off = i * CHUNK_SIZE;
+            chunks[i] = Arrays.copyOfRange(message, off,
+                    Math.min(off + CHUNK_SIZE, size));
+        }
+
+        function = createFunction(algorithm);
+        jdkDigest = MessageDigest.getInstance(algorithm);
+    }
+
+    private static BlockHashFunction createFunction(String algorithm)
+    {
+        switch (algorithm) {
+            case "SHA-256":
+                return new Sha256();
+            case "SHA-512":
+                return new Sha512();
+            default:
+                throw new IllegalArgumentException(algorithm);
+        }
+    }
+
+    @Benchmark
+    public byte[] jciphHash(Bytes counter)
+    {
+        counter.bytes += size;
+        return function.hash(message);
+    }
+
+    @Benchmark
+    public byte[] jciphStreaming(Bytes counter)
+    {
+        counter.bytes += size;
+
+        function.reset();
+        for (byte[] chunk : chunks) {
+            function.digest(chunk);
+        }
+
+        return function.finish();
+    }
+
+    @Benchmark
+    public byte[] jdkMessageDigest(Bytes counter)
+    {
+        counter.bytes += size;
+        return jdkDigest.digest(message);
+    }
+}
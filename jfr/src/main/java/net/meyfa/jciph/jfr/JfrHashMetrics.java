@@ -0,0 +1,132 @@
+package net.meyfa.jciph.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import net.meyfa.jciph.hashing.HashMetrics;
+
+
+/**
+ * {@link HashMetrics} that are also reported to JDK Flight Recorder.
+ *
+ * <p>
+ * While a recording is running, the aggregated counters and latency
+ * percentiles are emitted every second as {@code net.meyfa.jciph.HashStatistics}
+ * events. In addition, each finished hash can be emitted as a
+ * {@code net.meyfa.jciph.Hash} event; these are disabled by default because
+ * of their volume, and can be enabled in the recording settings.
+ *
+ * <p>
+ * This class is the only part of jciph that needs Flight Recorder, so it is
+ * kept in this separate module and the core library still runs on any Java 8
+ * JVM. With the module on the class path, {@link HashMetrics#create()}
+ * returns instances of this class.
+ *
+ * <p>
+ * Requires a JVM that includes Flight Recorder (Java 11 or later, or 8u262 or
+ * later). Call {@link #close()} to stop reporting.
+ */
+public class JfrHashMetrics extends HashMetrics
+{
+    private final Runnable periodicHook = this::emitStatistics;
+
+    /**
+     * Constructs new metrics and starts reporting them.
+     */
+    public JfrHashMetrics()
+    {
+        FlightRecorder.addPeriodicEvent(HashStatisticsEvent.class,
+                periodicHook);
+    }
+
+    @Override
+    public void finished(long messageLength, long nanos)
+    {
+        super.finished(messageLength, nanos);
+
+        HashEvent event = new HashEvent();
+        if (event.shouldCommit()) {
+            event.messageLength = messageLength;
+            event.hashTime = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Stops reporting the statistics events.
+     */
+    @Override
+    public void close()
+    {
+        FlightRecorder.removePeriodicEvent(periodicHook);
+    }
+
+    private void emitStatistics()
+    {
+        HashStatisticsEvent event = new HashStatisticsEvent();
+        event.bytesDigested = getBytesDigested();
+        event.blocksCompressed = getBlocksCompressed();
+        event.hashesFinished = getHashesFinished();
+        event.latencyP50 = getLatencyHistogram().getValueAtPercentile(50);
+        event.latencyP99 = getLatencyHistogram().getValueAtPercentile(99);
+        event.latencyMax = getLatencyHistogram().getMaxValue();
+        event.commit();
+    }
+
+    @Name("net.meyfa.jciph.Hash")
+    @Label("Hash")
+    @Description("A hash computed by a jciph hash function")
+    @Category("jciph")
+    @Enabled(false)
+    @StackTrace(false)
+    static class HashEvent extends Event
+    {
+        @Label("Message Length")
+        @DataAmount
+        long messageLength;
+
+        @Label("Hash Time")
+        @Timespan
+        long hashTime;
+    }
+
+    @Name("net.meyfa.jciph.HashStatistics")
+    @Label("Hash Statistics")
+    @Description("Totals and latency percentiles of jciph hash functions")
+    @Category("jciph")
+    @Period("1 s")
+    @StackTrace(false)
+    static class HashStatisticsEvent extends Event
+    {
+        @Label("Bytes Digested")
+        @DataAmount
+        long bytesDigested;
+
+        @Label("Blocks Compressed")
+        long blocksCompressed;
+
+        @Label("Hashes Finished")
+        long hashesFinished;
+
+        @Label("Median Latency")
+        @Timespan
+        long latencyP50;
+
+        @Label("99th Percentile Latency")
+        @Timespan
+        long latencyP99;
+
+        @Label("Maximum Latency")
+        @Timespan
+        long latencyMax;
+    }
+}
@@ -0,0 +1,59 @@
+package jciph;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import net.meyfa.jciph.hashing.HashMetrics;
+import net.meyfa.jciph.hashing.Sha512;
+import net.meyfa.jciph.jfr.JfrHashMetrics;
+
+
+public class JfrHashMetricsTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCreate()
+    {
+        try (HashMetrics metrics = HashMetrics.create()) {
+            assertEquals(JfrHashMetrics.class, metrics.getClass());
+        }
+    }
+
+    @Test
+    public void testJfrEvents() throws IOException
+    {
+        Path file = folder.newFile("hash.jfr").toPath();
+
+        try (Recording recording = new Recording();
+                JfrHashMetrics metrics = new JfrHashMetrics()) {
+            recording.enable("net.meyfa.jciph.Hash");
+            recording.start();
+
+            Sha512 function = new Sha512();
+            function.setMetricsListener(metrics);
+            function.hash(new byte[1234]);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName()
+                .equals("net.meyfa.jciph.Hash")
+                && e.getLong("messageLength") == 1234));
+    }
+}
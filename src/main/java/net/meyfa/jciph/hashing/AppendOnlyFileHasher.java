@@ -0,0 +1,253 @@
+package net.meyfa.jciph.hashing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+/**
+ * Hashes files that only ever grow by appending, such as logs and journals,
+ * in time proportional to the bytes appended since the previous call.
+ *
+ * <p>
+ * After hashing a file, its hash function state (see
+ * {@link BlockHashFunction#saveState()}) is stored in a checkpoint file beside
+ * it, together with the number of bytes that were hashed. The next call
+ * restores that state and only digests the bytes after the checkpoint's
+ * offset. The checkpoint of {@code file.log} is {@code file.log.hashstate}.
+ *
+ * <p>
+ * The checkpoint also records the file's identity, i.e. its file key (the
+ * inode, on file systems that have one) and its creation time, and the hash
+ * of the last bytes before the offset, which are read again when resuming.
+ * If the file has become shorter than the checkpoint's offset, if it has been
+ * replaced or rewritten, or if the checkpoint cannot be read, the whole file
+ * is hashed again. Checkpoints are replaced atomically, where the file system
+ * supports it.
+ *
+ * <p>
+ * Instances of this class are thread-safe, as each call uses a new hash
+ * function instance obtained from the factory given to the constructor.
+ */
+public class AppendOnlyFileHasher
+{
+    /**
+     * The suffix appended to a file's name to obtain its checkpoint's name.
+     */
+    public static final String CHECKPOINT_SUFFIX = ".hashstate";
+
+    private static final int CHECKPOINT_MAGIC = 0x6a636370; // "jccp"
+
+    /**
+     * The number of bytes before the offset that are hashed into the
+     * checkpoint and compared when resuming.
+     */
+    private static final int TAIL_CHECK_BYTES = 4096;
+
+    private final Supplier<? extends BlockHashFunction> factory;
+
+    /**
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}. The functions must support saving their
+     *            state.
+     */
+    public AppendOnlyFileHasher(Supplier<? extends BlockHashFunction> factory)
+    {
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the path of the checkpoint belonging to the given file.
+     *
+     * @param file The hashed file.
+     * @return The path of its checkpoint.
+     */
+    public static Path getCheckpointFile(Path file)
+    {
+        return file.resolveSibling(file.getFileName() + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Computes the hash of the file's current content, resuming from its
+     * checkpoint if possible, and updates the checkpoint.
+     *
+     * @param file The file to hash.
+     * @return The hash, as a byte array.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] hash(Path file) throws IOException
+    {
+        BlockHashFunction function = factory.get();
+        Path checkpoint = getCheckpointFile(file);
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            BasicFileAttributes attributes = Files.readAttributes(file,
+                    BasicFileAttributes.class);
+
+            long offset = restoreCheckpoint(function, checkpoint, channel,
+                    attributes, size);
+            function.digest(channel, offset, size - offset);
+
+            if (offset != size) {
+                writeCheckpoint(checkpoint, channel, attributes, size,
+                        function.saveState());
+            }
+        }
+
+        return function.finish();
+    }
+
+    /**
+     * Restores the function's state from the checkpoint, if there is a usable
+     * one, and returns the offset from which to continue.
+     */
+    private long restoreCheckpoint(BlockHashFunction function,
+            Path checkpoint, FileChannel channel,
+            BasicFileAttributes attributes, long size) throws IOException
+    {
+        if (!Files.isRegularFile(checkpoint)) {
+            return 0;
+        }
+
+        long offset;
+        String fileKey;
+        long creationTime;
+        byte[] tailHash;
+        byte[] state;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                Files.readAllBytes(checkpoint)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                return 0;
+            }
+
+            offset = in.readLong();
+            fileKey = in.readUTF();
+            creationTime = in.readLong();
+            tailHash = new byte[in.readUnsignedShort()];
+            in.readFully(tailHash);
+            state = new byte[in.available()];
+            in.readFully(state);
+        } catch (IOException e) {
+            // unreadable, corrupted, or from an older version
+            return 0;
+        }
+
+        if (offset < 0 || offset > size) {
+            // the file has been truncated or replaced
+            return 0;
+        }
+        if (!fileKey.equals(fileKey(attributes))
+                || creationTime != creationTime(attributes)) {
+            // the file has been replaced
+            return 0;
+        }
+        // read errors on the file itself are not caught
+        if (!Arrays.equals(tailHash, hashTail(channel, offset))) {
+            // the file has been rewritten
+            return 0;
+        }
+
+        try {
+            function.restoreState(state);
+        } catch (IllegalArgumentException e) {
+            // written for a different hash function, or corrupted
+            function.reset();
+            return 0;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Hashes the last bytes before the given offset, to detect rewritten
+     * files when resuming. This uses SHA-256 independently of the factory, as
+     * it only guards the checkpoint and is not part of the result.
+     */
+    private static byte[] hashTail(FileChannel channel, long offset)
+            throws IOException
+    {
+        int length = (int) Math.min(offset, TAIL_CHECK_BYTES);
+        ByteBuffer tail = ByteBuffer.allocate(length);
+        while (tail.hasRemaining()) {
+            int read = channel.read(tail, offset - length + tail.position());
+            if (read < 0) {
+                throw new EOFException("file shrank while reading");
+            }
+        }
+
+        return new Sha256().hash(tail.array());
+    }
+
+    private static String fileKey(BasicFileAttributes attributes)
+    {
+        Object key = attributes.fileKey();
+        return key != null ? key.toString() : "";
+    }
+
+    /**
+     * Returns the file's creation time, or -1 if the file system does not
+     * seem to record one. Some report the modification time instead, which
+     * changes with every append, so it must not be compared.
+     */
+    private static long creationTime(BasicFileAttributes attributes)
+    {
+        long creation = attributes.creationTime().to(TimeUnit.NANOSECONDS);
+        long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+
+        return creation != modified ? creation : -1;
+    }
+
+    /**
+     * Writes the checkpoint into a temporary file, which then replaces the
+     * old checkpoint, so that readers never see a partially written one.
+     */
+    private static void writeCheckpoint(Path checkpoint, FileChannel channel,
+            BasicFileAttributes attributes, long offset, byte[] state)
+            throws IOException
+    {
+        byte[] tailHash = hashTail(channel, offset);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeLong(offset);
+            out.writeUTF(fileKey(attributes));
+            out.writeLong(creationTime(attributes));
+            out.writeShort(tailHash.length);
+            out.write(tailHash);
+            out.write(state);
+        }
+        byte[] data = bytes.toByteArray();
+
+        Path temp = Files.createTempFile(checkpoint.toAbsolutePath()
+                .getParent(), checkpoint.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, data);
+            try {
+                Files.move(temp, checkpoint, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, checkpoint,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
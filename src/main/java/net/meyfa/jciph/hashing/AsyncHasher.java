@@ -0,0 +1,362 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+
+/**
+ * Hashes messages asynchronously on a dedicated set of worker threads.
+ *
+ * <p>
+ * Messages are submitted to a bounded queue and their hashes delivered
+ * through {@link CompletableFuture}s. Every worker owns one hash function
+ * instance for its whole lifetime, and takes the queued messages in batches,
+ * so that a busy hasher costs one queue operation per batch rather than per
+ * message, and no hash function is ever created per message.
+ *
+ * <p>
+ * The queue provides backpressure: {@link #submit(byte[])} waits while the
+ * queue is full, whereas {@link #trySubmit(byte[])} fails immediately, which
+ * suits threads that must never block, such as I/O event loops. The futures
+ * are completed on the worker threads, so dependent actions that are not
+ * asynchronous run there as well. Every accepted message's future is
+ * completed: if the hash function throws, even an error such as an
+ * {@link OutOfMemoryError}, the future fails with it. Errors are also passed
+ * to the worker's uncaught exception handler, and the worker goes on.
+ *
+ * <p>
+ * The workers are created through a {@link ThreadFactory}; on Java 21 and
+ * later, {@code Thread.ofVirtual().factory()} runs them on virtual threads.
+ * The workers do not hold monitors, so they never pin their carrier threads.
+ *
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class AsyncHasher implements AutoCloseable
+{
+    /**
+     * The maximum number of messages a worker takes from the queue at once.
+     */
+    private static final int MAX_BATCH = 64;
+
+    private static final Request SHUTDOWN = new Request(null);
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final BlockingQueue<Request> queue;
+    private final Thread[] workers;
+    private final AtomicInteger runningWorkers;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicBoolean shutdownPending = new AtomicBoolean();
+
+    /**
+     * Constructs a new hasher whose workers are daemon platform threads.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @param threads The number of worker threads.
+     * @param queueCapacity The maximum number of queued messages.
+     * @throws IllegalArgumentException If the number of threads or the queue
+     *             capacity is not positive.
+     */
+    public AsyncHasher(Supplier<? extends BlockHashFunction> factory,
+            int threads, int queueCapacity)
+    {
+        this(factory, threads, queueCapacity, defaultThreadFactory());
+    }
+
+    /**
+     * Constructs a new hasher.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @param threads The number of worker threads.
+     * @param queueCapacity The maximum number of queued messages.
+     * @param threadFactory The factory for the worker threads.
+     * @throws IllegalArgumentException If the number of threads or the queue
+     *             capacity is not positive.
+     */
+    public AsyncHasher(Supplier<? extends BlockHashFunction> factory,
+            int threads, int queueCapacity, ThreadFactory threadFactory)
+    {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("thread count must be positive");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "queue capacity must be positive");
+        }
+
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = new Thread[threads];
+        this.runningWorkers = new AtomicInteger(threads);
+
+        for (int i = 0; i < threads; ++i) {
+            BlockHashFunction function = factory.get();
+            workers[i] = threadFactory.newThread(() -> work(function));
+            workers[i].start();
+        }
+    }
+
+    private static ThreadFactory defaultThreadFactory()
+    {
+        String prefix = "jciph-hasher-" + POOL_COUNT.incrementAndGet() + "-";
+        AtomicInteger count = new AtomicInteger();
+
+        return runnable -> {
+            Thread thread = new Thread(runnable,
+                    prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Queues the given message for hashing, waiting for space in the queue if
+     * it is full. The message must not be modified until the hash has been
+     * computed.
+     *
+     * @param message The message to hash.
+     * @return A future that is completed with the hash.
+     * @throws InterruptedException If interrupted while waiting.
+     * @throws RejectedExecutionException If this hasher has been closed.
+     */
+    public CompletableFuture<byte[]> submit(byte[] message)
+            throws InterruptedException
+    {
+        Request request = new Request(message);
+
+        ensureOpen();
+        queue.put(request);
+        rejectIfClosed(request);
+
+        return request.future;
+    }
+
+    /**
+     * Queues the given message for hashing if there is space in the queue.
+     * The message must not be modified until the hash has been computed.
+     *
+     * @param message The message to hash.
+     * @return A future that is completed with the hash, or that has failed
+     *         with a {@link RejectedExecutionException} if the queue is full
+     *         or this hasher has been closed.
+     */
+    public CompletableFuture<byte[]> trySubmit(byte[] message)
+    {
+        Request request = new Request(message);
+
+        if (closed.get()) {
+            request.future.completeExceptionally(
+                    new RejectedExecutionException("hasher is closed"));
+        } else if (!queue.offer(request)) {
+            request.future.completeExceptionally(
+                    new RejectedExecutionException("queue is full"));
+        } else {
+            rejectIfClosed(request);
+        }
+
+        return request.future;
+    }
+
+    /**
+     * @return The number of messages waiting in the queue.
+     */
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting messages, waits for the workers to hash all queued
+     * messages, and stops them. Futures of messages submitted concurrently
+     * with closing may fail with a {@link RejectedExecutionException}.
+     *
+     * <p>
+     * When called on a worker thread, such as by a dependent action of one of
+     * the futures, this method does not wait: the workers still hash all
+     * queued messages, but stop only after it has returned.
+     */
+    @Override
+    public void close()
+    {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (isWorker(Thread.currentThread())) {
+            // the queue may be full, and waiting for space would wait for
+            // this very thread, so let the worker loop queue the marker
+            if (!queue.offer(SHUTDOWN)) {
+                shutdownPending.set(true);
+            }
+            return;
+        }
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(SHUTDOWN);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        for (Thread worker : workers) {
+            while (true) {
+                try {
+                    worker.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isWorker(Thread thread)
+    {
+        for (Thread worker : workers) {
+            if (worker == thread) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void ensureOpen()
+    {
+        if (closed.get()) {
+            throw new RejectedExecutionException("hasher is closed");
+        }
+    }
+
+    /**
+     * Handles a request queued while the hasher was being closed, which the
+     * workers might never take.
+     */
+    private void rejectIfClosed(Request request)
+    {
+        if (closed.get() && queue.remove(request)) {
+            request.future.completeExceptionally(
+                    new RejectedExecutionException("hasher is closed"));
+        }
+    }
+
+    private void work(BlockHashFunction function)
+    {
+        List<Request> batch = new ArrayList<>(MAX_BATCH);
+        boolean shutdown = false;
+
+        while (!shutdown) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                // only close() ends the worker
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+
+            for (Request request : batch) {
+                if (request == SHUTDOWN) {
+                    shutdown = true;
+                } else {
+                    run(request, function);
+                }
+            }
+            batch.clear();
+
+            // a worker that closed the hasher left the marker to us
+            if (shutdownPending.compareAndSet(true, false)
+                    && !queue.offer(SHUTDOWN)) {
+                shutdownPending.set(true);
+            }
+        }
+
+        // let the other workers see the marker as well
+        if (runningWorkers.decrementAndGet() > 0) {
+            while (true) {
+                try {
+                    queue.put(SHUTDOWN);
+                    break;
+                } catch (InterruptedException e) {
+                    // only close() ends the worker
+                }
+            }
+            return;
+        }
+
+        // the last worker rejects the messages queued after the marker
+        List<Request> rejected = new ArrayList<>();
+        queue.drainTo(rejected);
+        for (Request request : rejected) {
+            if (request != SHUTDOWN) {
+                request.future.completeExceptionally(
+                        new RejectedExecutionException("hasher is closed"));
+            }
+        }
+    }
+
+    /**
+     * Runs the given request. An error is reported like an uncaught one, but
+     * the worker lives on, so that the messages queued behind the request are
+     * still hashed.
+     */
+    private static void run(Request request, BlockHashFunction function)
+    {
+        try {
+            request.run(function);
+        } catch (Error e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private static final class Request
+    {
+        final byte[] message;
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        Request(byte[] message)
+        {
+            this.message = message;
+        }
+
+        /**
+         * Hashes the message and completes the future. The future is
+         * completed even if the hash function throws an error, which is then
+         * rethrown.
+         */
+        void run(BlockHashFunction function)
+        {
+            byte[] hash;
+            try {
+                hash = function.hash(message);
+            } catch (Throwable e) {
+                function.reset();
+                future.completeExceptionally(e);
+                if (e instanceof Error) {
+                    throw (Error) e;
+                }
+                return;
+            }
+
+            future.complete(hash);
+        }
+    }
+}
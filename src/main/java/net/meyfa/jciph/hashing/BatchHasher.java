@@ -0,0 +1,142 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+
+/**
+ * Hashes large numbers of independent messages in parallel, using a
+ * {@link ForkJoinPool}.
+ *
+ * <p>
+ * Since {@link BlockHashFunction} instances are stateful, every leaf task
+ * obtains its own instance from the factory given to the constructor and
+ * reuses it for all messages in its slice of the batch. The hashes are
+ * written into one array without intermediate allocations: the hash of
+ * message {@code i} occupies the bytes starting at index
+ * {@code i * getDigestLength()}.
+ *
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class BatchHasher
+{
+    /**
+     * The number of leaf tasks created per thread of parallelism, so that
+     * work stealing can balance out messages of differing lengths.
+     */
+    private static final int TASKS_PER_THREAD = 8;
+
+    private final ForkJoinPool pool;
+    private final int digestLength;
+    private final Supplier<? extends BlockHashFunction> factory;
+
+    /**
+     * Constructs a new batch hasher that runs on the common pool.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @throws IllegalArgumentException If the created functions do not
+     *             declare their digest length.
+     */
+    public BatchHasher(Supplier<? extends BlockHashFunction> factory)
+    {
+        this(factory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a new batch hasher that runs on the given pool.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @param pool The pool to run on.
+     * @throws IllegalArgumentException If the created functions do not
+     *             declare their digest length.
+     */
+    public BatchHasher(Supplier<? extends BlockHashFunction> factory,
+            ForkJoinPool pool)
+    {
+        BlockHashFunction first = factory.get();
+        if (first.getDigestLength() < 0) {
+            throw new IllegalArgumentException(
+                    "hash function does not declare its digest length");
+        }
+
+        this.pool = pool;
+        this.digestLength = first.getDigestLength();
+        this.factory = factory;
+    }
+
+    /**
+     * @return The length, in bytes, of each computed hash.
+     */
+    public int getDigestLength()
+    {
+        return digestLength;
+    }
+
+    /**
+     * Hashes all of the given messages.
+     *
+     * @param messages The messages to hash.
+     * @return An array containing the concatenated hashes, in the same order
+     *         as the messages.
+     * @throws IllegalArgumentException If the hashes do not fit into an
+     *             array.
+     */
+    public byte[] hashAll(byte[][] messages)
+    {
+        long length = (long) messages.length * digestLength;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many messages");
+        }
+
+        byte[] out = new byte[(int) length];
+        hashAll(messages, out, 0);
+
+        return out;
+    }
+
+    /**
+     * Hashes all of the given messages.
+     *
+     * @param messages The messages to hash.
+     * @return An array containing the concatenated hashes, in the same order
+     *         as the messages.
+     * @throws IllegalArgumentException If the hashes do not fit into an
+     *             array.
+     */
+    public byte[] hashAll(List<byte[]> messages)
+    {
+        return hashAll(messages.toArray(new byte[0][]));
+    }
+
+    /**
+     * Hashes all of the given messages and writes the concatenated hashes, in
+     * the same order as the messages, into the given array.
+     *
+     * @param messages The messages to hash.
+     * @param out The array to write the hashes into.
+     * @param outOff The index at which to write the first hash.
+     * @throws IndexOutOfBoundsException If the hashes do not fit into the
+     *             array.
+     */
+    public void hashAll(byte[][] messages, byte[] out, int outOff)
+    {
+        long length = (long) messages.length * digestLength;
+        if (outOff < 0 || length > out.length - outOff) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (messages.length == 0) {
+            return;
+        }
+
+        int leafSize = Math.max(1, messages.length
+                / (pool.getParallelism() * TASKS_PER_THREAD));
+
+        pool.invoke(RangeTask.hashEach(0, messages.length, leafSize, factory,
+                (function, i) -> function.hash(messages[i], 0,
+                        messages[i].length, out, outOff + i * digestLength)));
+    }
+}
@@ -0,0 +1,38 @@
+package net.meyfa.jciph.hashing;
+
+/**
+ * Internal helpers for reading and writing big-endian words in byte arrays,
+ * without the overhead of wrapping the arrays in a {@code ByteBuffer}.
+ */
+final class BigEndian
+{
+    private BigEndian()
+    {
+    }
+
+    static int getInt(byte[] b, int off)
+    {
+        return (b[off] << 24) | ((b[off + 1] & 0xff) << 16)
+                | ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
+    }
+
+    static long getLong(byte[] b, int off)
+    {
+        return ((long) getInt(b, off) << 32)
+                | (getInt(b, off + 4) & 0xffffffffL);
+    }
+
+    static void putInt(byte[] b, int off, int value)
+    {
+        b[off] = (byte) (value >>> 24);
+        b[off + 1] = (byte) (value >>> 16);
+        b[off + 2] = (byte) (value >>> 8);
+        b[off + 3] = (byte) value;
+    }
+
+    static void putLong(byte[] b, int off, long value)
+    {
+        putInt(b, off, (int) (value >>> 32));
+        putInt(b, off + 4, (int) value);
+    }
+}
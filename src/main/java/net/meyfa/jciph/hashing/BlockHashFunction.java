@@ -1,6 +1,12 @@
 package net.meyfa.jciph.hashing;
 
+import java.io.EOFException;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 
 /**
@@ -8,25 +14,103 @@ import java.nio.ByteBuffer;
  * fixed-size blocks.
  *
  * <p>
- * Call the {@link #digest(byte[])} method to add data to be hashed. Then, call
- * {@link #finish()} to obtain the result. Optionally call {@link #reset()} as a
- * first step to ensure no state was left behind by a previous operation (called
- * automatically after {@code finish()} concludes).
+ * Call the {@link #digest(byte[])} method (or one of its overloads) to add
+ * data to be hashed. Then, call {@link #finish()} to obtain the result.
+ * Optionally call {@link #reset()} as a first step to ensure no state was left
+ * behind by a previous operation (called automatically after {@code finish()}
+ * concludes).
  */
 public abstract class BlockHashFunction extends HashFunction
 {
+    /**
+     * The size of the windows in which files are mapped into memory. A
+     * multiple of every block size, so that no bytes need to be buffered
+     * between windows.
+     */
+    private static final long MAP_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The version of the format written by {@link #saveState()}.
+     */
+    private static final byte STATE_FORMAT_VERSION = 1;
+
+    /**
+     * The length of the header preceding the chaining state: version, block
+     * size, digest length and chaining state length.
+     */
+    private static final int STATE_HEADER_BYTES = 1 + 3 * Integer.BYTES;
+
     private final int blockSize;
+    private final int digestLength;
     private final ByteBuffer blockBuffer;
 
+    // lazily allocated, see processBlock(byte[], int)
+    private byte[] scratchBlock;
+
+    // instrumentation, see setMetricsListener(HashMetricsListener)
+    private HashMetricsListener metricsListener;
+    private long metricsBytes;
+    private long metricsStartTime;
+
     /**
      * @param blockSize The block size, in bytes, that this function uses.
      */
     public BlockHashFunction(int blockSize)
+    {
+        this(blockSize, -1);
+    }
+
+    /**
+     * @param blockSize The block size, in bytes, that this function uses.
+     * @param digestLength The length, in bytes, of the computed hashes.
+     */
+    public BlockHashFunction(int blockSize, int digestLength)
     {
         this.blockSize = blockSize;
+        this.digestLength = digestLength;
         this.blockBuffer = ByteBuffer.allocate(blockSize);
     }
 
+    /**
+     * @return The block size, in bytes, that this function uses.
+     */
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+    /**
+     * @return The length, in bytes, of the computed hashes, or -1 if the
+     *         subclass did not specify it.
+     */
+    public int getDigestLength()
+    {
+        return digestLength;
+    }
+
+    /**
+     * Sets the listener that is informed about the data digested and the
+     * hashes finished by this function, or removes it. Without a listener,
+     * instrumentation costs no more than a field check per call.
+     *
+     * @param listener The listener, or null for none.
+     * @see HashMetrics
+     */
+    public void setMetricsListener(HashMetricsListener listener)
+    {
+        this.metricsListener = listener;
+        this.metricsBytes = 0;
+        this.metricsStartTime = 0;
+    }
+
+    /**
+     * @return The listener informed about this function's work, or null.
+     */
+    public HashMetricsListener getMetricsListener()
+    {
+        return metricsListener;
+    }
+
     @Override
     public byte[] hash(byte[] message)
     {
@@ -36,12 +120,59 @@ public abstract class BlockHashFunction extends HashFunction
         return finish();
     }
 
+    @Override
+    public int hash(byte[] message, int off, int len, byte[] out, int outOff)
+    {
+        reset();
+        digest(message, off, len);
+
+        return finishInto(out, outOff);
+    }
+
+    /**
+     * Hashes the contents of the given file. The file is mapped into memory
+     * instead of being read into the heap.
+     *
+     * @param file The file to hash.
+     * @return The hash, as a byte array.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] hashFile(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            return hash(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * Hashes the given region of a file.
+     *
+     * @param channel The channel of the file to hash.
+     * @param position The position in the file at which the region starts.
+     * @param length The length of the region.
+     * @return The hash, as a byte array.
+     * @throws IOException If an I/O error occurs.
+     * @see #digest(FileChannel, long, long)
+     */
+    public byte[] hash(FileChannel channel, long position, long length)
+            throws IOException
+    {
+        reset();
+        digest(channel, position, length);
+
+        return finish();
+    }
+
     /**
      * Clear this function's state so that computation can begin anew.
      */
     public void reset()
     {
         blockBuffer.clear();
+
+        metricsBytes = 0;
+        metricsStartTime = 0;
     }
 
     /**
@@ -52,19 +183,144 @@ public abstract class BlockHashFunction extends HashFunction
      */
     public void digest(byte[] partialMessage)
     {
-        int consumed = 0;
-        while (consumed < partialMessage.length) {
+        digest(partialMessage, 0, partialMessage.length);
+    }
+
+    /**
+     * Add the given range of the array to the data to be hashed. Full blocks
+     * are processed directly from the array; only bytes that do not fill a
+     * whole block are buffered until more data arrives.
+     *
+     * @param partialMessage The array containing the message data to add.
+     * @param off The index of the first byte to add.
+     * @param len The number of bytes to add.
+     * @throws IndexOutOfBoundsException If the range exceeds the array.
+     */
+    public void digest(byte[] partialMessage, int off, int len)
+    {
+        if (off < 0 || len < 0 || len > partialMessage.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (metricsListener != null) {
+            recordDigest(len);
+        }
+
+        // complete a previously started block first
+        if (blockBuffer.position() > 0) {
+            int max = Math.min(blockBuffer.remaining(), len);
+            blockBuffer.put(partialMessage, off, max);
+            off += max;
+            len -= max;
+
+            if (blockBuffer.hasRemaining()) {
+                return;
+            }
+            processBlock(blockBuffer.array(), 0);
+            blockBuffer.clear();
+        }
+
+        while (len >= blockSize) {
+            processBlock(partialMessage, off);
+            off += blockSize;
+            len -= blockSize;
+        }
+
+        blockBuffer.put(partialMessage, off, len);
+    }
+
+    /**
+     * Add the remaining bytes of the given buffer to the data to be hashed.
+     * Upon return, the buffer's position equals its limit.
+     *
+     * <p>
+     * Heap buffers are handled like arrays (see
+     * {@link #digest(byte[], int, int)}). For direct buffers, full blocks are
+     * read from the buffer's memory through
+     * {@link #processBlock(ByteBuffer, int)}.
+     *
+     * @param partialMessage The buffer containing the message data to add.
+     */
+    public void digest(ByteBuffer partialMessage)
+    {
+        int pos = partialMessage.position();
+        int len = partialMessage.remaining();
+
+        if (partialMessage.hasArray()) {
+            digest(partialMessage.array(), partialMessage.arrayOffset() + pos,
+                    len);
+            partialMessage.position(pos + len);
+            return;
+        }
 
-            int max = Math.min(blockSize, partialMessage.length - consumed);
+        if (metricsListener != null) {
+            recordDigest(len);
+        }
 
-            blockBuffer.put(partialMessage, consumed, max);
-            consumed += max;
+        // absolute reads use the buffer's byte order, so use a big-endian view
+        ByteBuffer src = partialMessage;
+        if (src.order() != ByteOrder.BIG_ENDIAN) {
+            src = partialMessage.duplicate().order(ByteOrder.BIG_ENDIAN);
+        }
+
+        // complete a previously started block first
+        if (blockBuffer.position() > 0) {
+            int max = Math.min(blockBuffer.remaining(), len);
+            for (int i = 0; i < max; ++i) {
+                blockBuffer.put(src.get(pos + i));
+            }
+            pos += max;
+            len -= max;
 
-            if (!blockBuffer.hasRemaining()) {
-                processBlock(blockBuffer.array());
-                blockBuffer.clear();
+            if (blockBuffer.hasRemaining()) {
+                partialMessage.position(pos);
+                return;
             }
+            processBlock(blockBuffer.array(), 0);
+            blockBuffer.clear();
+        }
+
+        while (len >= blockSize) {
+            processBlock(src, pos);
+            pos += blockSize;
+            len -= blockSize;
+        }
+
+        for (int i = 0; i < len; ++i) {
+            blockBuffer.put(src.get(pos + i));
+        }
+        partialMessage.position(pos + len);
+    }
+
+    /**
+     * Add the given region of a file to the data to be hashed. The region is
+     * mapped into memory in windows, which are passed to
+     * {@link #digest(ByteBuffer)}; so files larger than 2 GiB are supported,
+     * and the data is never copied into the heap. The channel's position is
+     * not changed.
+     *
+     * @param channel The channel of the file to hash.
+     * @param position The position in the file at which the region starts.
+     * @param length The length of the region.
+     * @throws IllegalArgumentException If the position or length is negative.
+     * @throws EOFException If the region extends beyond the end of the file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void digest(FileChannel channel, long position, long length)
+            throws IOException
+    {
+        if (position < 0 || length < 0) {
+            throw new IllegalArgumentException("negative position or length");
+        }
+        if (length > channel.size() - position) {
+            throw new EOFException("region exceeds the file");
+        }
+
+        while (length > 0) {
+            long size = Math.min(length, MAP_WINDOW_SIZE);
+            digest(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
 
+            position += size;
+            length -= size;
         }
     }
 
@@ -76,11 +332,202 @@ public abstract class BlockHashFunction extends HashFunction
     public byte[] finish()
     {
         byte[] result = finish(blockBuffer.array(), blockBuffer.position());
+        if (metricsListener != null) {
+            recordFinish();
+        }
         reset();
 
         return result;
     }
 
+    /**
+     * Finalizes the hashing process with the data that was collected until now
+     * and writes the hash into the given array, instead of allocating a new
+     * one.
+     *
+     * @param out The array to write the hash into.
+     * @param outOff The index at which to write the hash.
+     * @return The number of bytes written, i.e. the hash length.
+     * @throws IndexOutOfBoundsException If the hash does not fit into the
+     *             array.
+     */
+    public int finishInto(byte[] out, int outOff)
+    {
+        if (outOff < 0
+                || (digestLength >= 0 && digestLength > out.length - outOff)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        int written = finish(blockBuffer.array(), blockBuffer.position(), out,
+                outOff);
+        if (metricsListener != null) {
+            recordFinish();
+        }
+        reset();
+
+        return written;
+    }
+
+    /**
+     * Exports this function's current state, i.e. everything that has been
+     * digested since the last reset, so that hashing can be resumed later
+     * through {@link #restoreState(byte[])}, possibly on another instance or
+     * in another process. This function's state is not modified.
+     *
+     * <p>
+     * The state is serialized compactly, in this format (all integers
+     * big-endian):
+     *
+     * <ul>
+     * <li>1 byte: the format version, currently 1;</li>
+     * <li>4 bytes: the block size;</li>
+     * <li>4 bytes: the digest length;</li>
+     * <li>4 bytes: the length <i>L</i> of the chaining state;</li>
+     * <li><i>L</i> bytes: the chaining state, i.e. the intermediate hash value
+     * and the count of the processed bytes (see
+     * {@link #getChainingStateLength()});</li>
+     * <li>the buffered bytes that do not fill a whole block yet, up to the
+     * end.</li>
+     * </ul>
+     *
+     * @return The serialized state.
+     * @throws UnsupportedOperationException If the subclass does not support
+     *             saving its state.
+     */
+    public byte[] saveState()
+    {
+        int stateLength = getChainingStateLength();
+        if (stateLength < 0) {
+            throw new UnsupportedOperationException(
+                    "hash function does not support saving its state");
+        }
+
+        int buffered = blockBuffer.position();
+        byte[] state = new byte[STATE_HEADER_BYTES + stateLength + buffered];
+
+        state[0] = STATE_FORMAT_VERSION;
+        BigEndian.putInt(state, 1, blockSize);
+        BigEndian.putInt(state, 5, digestLength);
+        BigEndian.putInt(state, 9, stateLength);
+        saveChainingState(state, STATE_HEADER_BYTES);
+        System.arraycopy(blockBuffer.array(), 0, state,
+                STATE_HEADER_BYTES + stateLength, buffered);
+
+        return state;
+    }
+
+    /**
+     * Replaces this function's state by one exported through
+     * {@link #saveState()}, on an instance of the same hash function. Any data
+     * digested so far is discarded; hashing continues as if the data digested
+     * before the export had been digested on this instance.
+     *
+     * @param state The serialized state.
+     * @throws IllegalArgumentException If the state is malformed, or if it
+     *             was exported from a different hash function.
+     * @throws UnsupportedOperationException If the subclass does not support
+     *             restoring its state.
+     */
+    public void restoreState(byte[] state)
+    {
+        int stateLength = getChainingStateLength();
+        if (stateLength < 0) {
+            throw new UnsupportedOperationException(
+                    "hash function does not support restoring its state");
+        }
+
+        if (state.length < STATE_HEADER_BYTES
+                || state[0] != STATE_FORMAT_VERSION) {
+            throw new IllegalArgumentException("unknown state format");
+        }
+        if (BigEndian.getInt(state, 1) != blockSize
+                || BigEndian.getInt(state, 5) != digestLength
+                || BigEndian.getInt(state, 9) != stateLength) {
+            throw new IllegalArgumentException(
+                    "state belongs to a different hash function");
+        }
+
+        int buffered = state.length - STATE_HEADER_BYTES - stateLength;
+        if (buffered < 0 || buffered >= blockSize) {
+            throw new IllegalArgumentException("state has an invalid length");
+        }
+
+        blockBuffer.clear();
+        restoreChainingState(state, STATE_HEADER_BYTES);
+        blockBuffer.put(state, STATE_HEADER_BYTES + stateLength, buffered);
+
+        metricsBytes = buffered;
+        metricsStartTime = 0;
+    }
+
+    /**
+     * Informs the metrics listener, which must be set, that the given number
+     * of bytes is being digested. The number of blocks they complete is
+     * derived from the bytes digested since the last reset.
+     *
+     * @param length The number of bytes.
+     */
+    void recordDigest(long length)
+    {
+        if (metricsStartTime == 0) {
+            metricsStartTime = System.nanoTime();
+        }
+
+        long blocks = (metricsBytes % blockSize + length) / blockSize;
+        metricsBytes += length;
+
+        metricsListener.digested(length, (int) blocks);
+    }
+
+    /**
+     * Informs the metrics listener, which must be set, that a hash has been
+     * finished, and starts a new measurement.
+     */
+    void recordFinish()
+    {
+        long elapsed = metricsStartTime != 0
+                ? System.nanoTime() - metricsStartTime : 0;
+        metricsListener.finished(metricsBytes, elapsed);
+
+        metricsBytes = 0;
+        metricsStartTime = 0;
+    }
+
+    /**
+     * Copies the chaining state into the given array. This must only be done
+     * at a block boundary, i.e. when no bytes are buffered.
+     *
+     * @param out The array to write the state into.
+     * @param off The index at which to write the state.
+     * @throws IllegalStateException If there are buffered bytes.
+     * @see #getChainingStateLength()
+     */
+    void saveMidstate(byte[] out, int off)
+    {
+        if (blockBuffer.position() != 0) {
+            throw new IllegalStateException("not at a block boundary");
+        }
+
+        saveChainingState(out, off);
+    }
+
+    /**
+     * Replaces this function's state by the given chaining state, which was
+     * saved through {@link #saveMidstate(byte[], int)} on an instance of the
+     * same class.
+     *
+     * @param in The array containing the state.
+     * @param off The index at which the state starts.
+     */
+    void restoreMidstate(byte[] in, int off)
+    {
+        blockBuffer.clear();
+        restoreChainingState(in, off);
+
+        metricsBytes = 0;
+        metricsStartTime = 0;
+    }
+
     /**
      * When enough bytes have been collected inside {@link #digest(byte[])},
      * this method is called with the full block. The array has a length equal
@@ -90,6 +537,103 @@ public abstract class BlockHashFunction extends HashFunction
      */
     protected abstract void processBlock(byte[] block);
 
+    /**
+     * Called with a full block that starts at the given offset of a possibly
+     * larger array, e.g. the caller's array in
+     * {@link #digest(byte[], int, int)}.
+     *
+     * <p>
+     * The default implementation copies the block and passes it to
+     * {@link #processBlock(byte[])}. Subclasses should override it to read
+     * the block in place.
+     *
+     * @param block The array containing the block.
+     * @param off The index at which the block starts.
+     */
+    protected void processBlock(byte[] block, int off)
+    {
+        if (off == 0 && block.length == blockSize) {
+            processBlock(block);
+            return;
+        }
+
+        if (scratchBlock == null) {
+            scratchBlock = new byte[blockSize];
+        }
+        System.arraycopy(block, off, scratchBlock, 0, blockSize);
+        processBlock(scratchBlock);
+    }
+
+    /**
+     * Called with a full block that starts at the given index of a direct
+     * buffer, see {@link #digest(ByteBuffer)}. The buffer's byte order is
+     * big-endian; its position and limit must not be modified.
+     *
+     * <p>
+     * The default implementation copies the block and passes it to
+     * {@link #processBlock(byte[])}. Subclasses should override it to read
+     * the block in place.
+     *
+     * @param block The buffer containing the block.
+     * @param index The index at which the block starts.
+     */
+    protected void processBlock(ByteBuffer block, int index)
+    {
+        if (scratchBlock == null) {
+            scratchBlock = new byte[blockSize];
+        }
+        for (int i = 0; i < blockSize; ++i) {
+            scratchBlock[i] = block.get(index + i);
+        }
+        processBlock(scratchBlock);
+    }
+
+    /**
+     * Returns the length of the chaining state, which consists of the
+     * intermediate hash value and the count of the processed bytes. The
+     * chaining state allows hashing to be resumed from a block boundary, e.g.
+     * for HMAC keys or shared message prefixes.
+     *
+     * <p>
+     * The default implementation returns -1, meaning that the subclass does
+     * not support saving its state. Subclasses that do must also override
+     * {@link #saveChainingState(byte[], int)} and
+     * {@link #restoreChainingState(byte[], int)}.
+     *
+     * @return The length of the chaining state, in bytes, or -1.
+     */
+    protected int getChainingStateLength()
+    {
+        return -1;
+    }
+
+    /**
+     * Writes the chaining state into the given array. Called only at a block
+     * boundary.
+     *
+     * @param out The array to write the state into.
+     * @param off The index at which to write the state.
+     * @see #getChainingStateLength()
+     */
+    protected void saveChainingState(byte[] out, int off)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Replaces the chaining state by the one given, which was written by
+     * {@link #saveChainingState(byte[], int)}. The block buffer has been
+     * cleared already.
+     *
+     * @param in The array containing the state.
+     * @param off The index at which the state starts.
+     * @see #getChainingStateLength()
+     */
+    protected void restoreChainingState(byte[] in, int off)
+    {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Called by the public {@link #finish()} method with the remaining, not yet
      * processed bytes. The amount of unprocessed bytes in the given array,
@@ -100,4 +644,34 @@ public abstract class BlockHashFunction extends HashFunction
      * @return The computed hash.
      */
     protected abstract byte[] finish(byte[] remainder, int length);
+
+    /**
+     * Called by the public {@link #finishInto(byte[], int)} method with the
+     * remaining, not yet processed bytes, like
+     * {@link #finish(byte[], int)}. The computed hash is written into the
+     * given output array.
+     *
+     * <p>
+     * The remainder array is this function's internal block buffer, of length
+     * equal to the block size. Implementations may use it for padding the
+     * message, since the buffer is cleared afterwards.
+     *
+     * <p>
+     * The default implementation calls {@link #finish(byte[], int)} and
+     * copies the result. Subclasses should override it to avoid that
+     * allocation.
+     *
+     * @param remainder Array containing the unprocessed bytes.
+     * @param length The number of unprocessed bytes in the array.
+     * @param out The array to write the hash into.
+     * @param outOff The index at which to write the hash.
+     * @return The number of bytes written, i.e. the hash length.
+     */
+    protected int finish(byte[] remainder, int length, byte[] out, int outOff)
+    {
+        byte[] result = finish(remainder, length);
+        System.arraycopy(result, 0, out, outOff, result.length);
+
+        return result.length;
+    }
 }
@@ -0,0 +1,70 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.function.Supplier;
+
+
+/**
+ * A thread-safe hash function that can be shared by any number of threads.
+ *
+ * <p>
+ * {@link BlockHashFunction} instances are stateful and must not be used by
+ * multiple threads at once. This class takes an instance from a
+ * {@link HashFunctionPool} for every hash. It is lock-free: no thread ever
+ * blocks or waits for another, and there are no locks that could pin virtual
+ * threads. The number of retained instances is bounded by the number of
+ * stripes, no matter how many threads use this function.
+ */
+public class ConcurrentHashFunction extends HashFunction
+{
+    private final HashFunctionPool pool;
+
+    /**
+     * Constructs a new concurrent hash function with twice as many slots as
+     * there are available processors.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     */
+    public ConcurrentHashFunction(Supplier<? extends BlockHashFunction> factory)
+    {
+        this(factory, HashFunctionPool.defaultStripes());
+    }
+
+    /**
+     * Constructs a new concurrent hash function.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @param stripes The number of slots for instances, which is rounded up to
+     *            the next power of two.
+     * @throws IllegalArgumentException If the number of stripes is not
+     *             between 1 and 65536.
+     */
+    public ConcurrentHashFunction(Supplier<? extends BlockHashFunction> factory,
+            int stripes)
+    {
+        this.pool = new HashFunctionPool(factory, stripes);
+    }
+
+    @Override
+    public byte[] hash(byte[] message)
+    {
+        BlockHashFunction function = pool.acquire();
+
+        byte[] result = function.hash(message);
+
+        pool.release(function);
+        return result;
+    }
+
+    @Override
+    public int hash(byte[] message, int off, int len, byte[] out, int outOff)
+    {
+        BlockHashFunction function = pool.acquire();
+
+        int written = function.hash(message, off, len, out, outOff);
+
+        pool.release(function);
+        return written;
+    }
+}
@@ -0,0 +1,293 @@
+package net.meyfa.jciph.hashing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+/**
+ * Caches the digests of files, so that unchanged files need not be hashed
+ * again.
+ *
+ * <p>
+ * A cached digest is used only while the file's size, modification time and
+ * file key (the inode, on file systems that have one) are the same as when it
+ * was hashed; otherwise, the file is hashed again. Like any such cache, it
+ * cannot notice modifications that keep the size and do not change the
+ * modification time, which is possible on file systems with coarse time
+ * stamps.
+ *
+ * <p>
+ * The cache holds a bounded number of files and evicts the least recently
+ * used ones. It can be saved to and loaded from a compact binary index file,
+ * so that it survives restarts.
+ *
+ * <p>
+ * Instances of this class are thread-safe. Files are hashed outside of any
+ * lock, each with a new hash function instance from the factory given to the
+ * constructor.
+ */
+public class FileDigestCache
+{
+    private static final int INDEX_MAGIC = 0x6a636463; // "jcdc"
+    private static final int INDEX_VERSION = 1;
+
+    private final Supplier<? extends BlockHashFunction> factory;
+    private final byte[] fingerprint;
+    private final int capacity;
+
+    private final Map<String, CachedDigest> entries;
+
+    /**
+     * Constructs a new, empty cache.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @param capacity The maximum number of files to keep.
+     * @throws IllegalArgumentException If the capacity is not positive.
+     */
+    public FileDigestCache(Supplier<? extends BlockHashFunction> factory,
+            int capacity)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        this.factory = factory;
+        // identifies the algorithm independently of the implementing class
+        this.fingerprint = factory.get().hash(new byte[0]);
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, CachedDigest>(16, 0.75f,
+                true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, CachedDigest> eldest)
+            {
+                return size() > FileDigestCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the digest of the given file, from the cache if the file is
+     * unchanged, or by hashing it otherwise.
+     *
+     * @param file The file.
+     * @return The digest, as a new array.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] getDigest(Path file) throws IOException
+    {
+        String key = file.toAbsolutePath().normalize().toString();
+        BasicFileAttributes before = Files.readAttributes(file,
+                BasicFileAttributes.class);
+
+        CachedDigest cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null && cached.matches(before)) {
+            return cached.digest.clone();
+        }
+
+        byte[] digest = factory.get().hashFile(file);
+
+        // only cache the digest if the file did not change while hashing it
+        BasicFileAttributes after = Files.readAttributes(file,
+                BasicFileAttributes.class);
+        CachedDigest entry = new CachedDigest(before, digest);
+        if (entry.matches(after)) {
+            synchronized (entries) {
+                entries.put(key, entry);
+            }
+        }
+
+        return digest.clone();
+    }
+
+    /**
+     * Removes the given file from the cache.
+     *
+     * @param file The file.
+     */
+    public void invalidate(Path file)
+    {
+        String key = file.toAbsolutePath().normalize().toString();
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * @return The number of cached files.
+     */
+    public int size()
+    {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Removes all cached files.
+     */
+    public void clear()
+    {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Writes the cache into the given index file, replacing it atomically
+     * where the file system supports it. The least recently used files are
+     * written first, so that loading the index restores the usage order.
+     *
+     * @param index The index file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void save(Path index) throws IOException
+    {
+        List<Map.Entry<String, CachedDigest>> snapshot;
+        synchronized (entries) {
+            snapshot = new ArrayList<>(entries.entrySet());
+        }
+
+        Path temp = Files.createTempFile(index.toAbsolutePath().getParent(),
+                index.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(INDEX_VERSION);
+                out.writeShort(fingerprint.length);
+                out.write(fingerprint);
+                out.writeInt(snapshot.size());
+
+                for (Map.Entry<String, CachedDigest> e : snapshot) {
+                    CachedDigest entry = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modifiedNanos);
+                    out.writeUTF(entry.fileKey);
+                    out.writeShort(entry.digest.length);
+                    out.write(entry.digest);
+                }
+            }
+
+            try {
+                Files.move(temp, index, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Adds the files from the given index file, which was written by
+     * {@link #save(Path)}, to the cache. The files are not checked now, but
+     * whenever their digest is requested.
+     *
+     * @param index The index file.
+     * @throws IOException If an I/O error occurs, if the index is malformed,
+     *             or if it was written for a different hash function.
+     */
+    public void load(Path index) throws IOException
+    {
+        Map<String, CachedDigest> loaded = new LinkedHashMap<>();
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                throw new IOException("unknown index format");
+            }
+            byte[] fp = new byte[in.readUnsignedShort()];
+            in.readFully(fp);
+            if (!Arrays.equals(fp, fingerprint)) {
+                throw new IOException(
+                        "index belongs to a different hash function");
+            }
+
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("malformed index");
+            }
+
+            for (int i = 0; i < count; ++i) {
+                String key = in.readUTF();
+                long size = in.readLong();
+                long modifiedNanos = in.readLong();
+                String fileKey = in.readUTF();
+                byte[] digest = new byte[in.readUnsignedShort()];
+                in.readFully(digest);
+
+                loaded.put(key, new CachedDigest(size, modifiedNanos,
+                        fileKey, digest));
+            }
+        }
+
+        synchronized (entries) {
+            entries.putAll(loaded);
+        }
+    }
+
+    private static final class CachedDigest
+    {
+        final long size;
+        final long modifiedNanos;
+        final String fileKey;
+        final byte[] digest;
+
+        CachedDigest(long size, long modifiedNanos, String fileKey,
+                byte[] digest)
+        {
+            this.size = size;
+            this.modifiedNanos = modifiedNanos;
+            this.fileKey = fileKey;
+            this.digest = digest;
+        }
+
+        CachedDigest(BasicFileAttributes attributes, byte[] digest)
+        {
+            this(attributes.size(), modifiedNanos(attributes),
+                    fileKey(attributes), digest);
+        }
+
+        boolean matches(BasicFileAttributes attributes)
+        {
+            return size == attributes.size()
+                    && modifiedNanos == modifiedNanos(attributes)
+                    && fileKey.equals(fileKey(attributes));
+        }
+
+        private static long modifiedNanos(BasicFileAttributes attributes)
+        {
+            return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        }
+
+        private static String fileKey(BasicFileAttributes attributes)
+        {
+            Object key = attributes.fileKey();
+            return key != null ? key.toString() : "";
+        }
+    }
+}
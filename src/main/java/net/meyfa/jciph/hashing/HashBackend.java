@@ -0,0 +1,17 @@
+package net.meyfa.jciph.hashing;
+
+/**
+ * The implementations that {@link HashBackends} can choose from.
+ */
+public enum HashBackend
+{
+    /**
+     * jciph's own implementations, {@link Sha256} and {@link Sha512}.
+     */
+    JCIPH,
+
+    /**
+     * The JDK's implementations, through {@link MessageDigestFunction}.
+     */
+    JDK;
+}
@@ -0,0 +1,214 @@
+package net.meyfa.jciph.hashing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.PlatformManagedObject;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+
+/**
+ * Chooses the fastest working SHA-2 implementation for this JVM.
+ *
+ * <p>
+ * The backend is selected once per algorithm, when it is first used. By
+ * default, the JDK's implementation is chosen if the JVM uses the processor's
+ * SHA instructions (HotSpot's {@code UseSHA} flag), and jciph's otherwise. The
+ * system property {@value #BACKEND_PROPERTY} overrides this with
+ * {@code jdk} or {@code jciph}; {@code auto} is the default. Any other value
+ * makes the first use of a function fail with an
+ * {@link IllegalStateException}, rather than being silently ignored.
+ *
+ * <p>
+ * The selected backend must pass a known-answer self-test, which includes
+ * multi-block and streamed input. Otherwise, the other backend is used, if it
+ * passes instead.
+ *
+ * <p>
+ * Functions obtained here are ordinary {@link BlockHashFunction}s. Note that
+ * only the jciph backend supports saving the hash state, which {@link Hmac}
+ * and {@link BlockHashFunction#saveState()} depend on.
+ */
+public final class HashBackends
+{
+    /**
+     * The system property that overrides the backend selection.
+     */
+    public static final String BACKEND_PROPERTY = "jciph.backend";
+
+    private static final byte[] KAT_SHORT = ascii("abc");
+    private static final byte[] KAT_LONG = ascii(
+            "abcdefghbcdefghicdefghijdefghijkefghijklfghijklmghijklmn"
+                    + "hijklmnoijklmnopjklmnopqklmnopqrlmnopqrsmnopqrstnopqrstu");
+
+    private static final byte[][] KAT_SHA256 = {
+            hex("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"),
+            hex("cf5b16a778af8380036ce59e7b0492370b249b11e8f07a51afac45037afee9d1"), };
+
+    private static final byte[][] KAT_SHA512 = {
+            hex("ddaf35a193617abacc417349ae20413112e6fa4e89a97ea20a9eeee64b55d39a"
+                    + "2192992a274fc1a836ba3c23a3feebbd454d4423643ce80e2a9ac94fa54ca49f"),
+            hex("8e959b75dae313da8cf4f72814fc143f8f7779c6eb9f7fa17299aeadb6889018"
+                    + "501d289e4900f7e4331b99dec4b5433ac7d329eeb6dd26545e96e55b874be909"), };
+
+    private HashBackends()
+    {
+    }
+
+    /**
+     * @return The backend used for SHA-256.
+     */
+    public static HashBackend getSha256Backend()
+    {
+        return Sha256Holder.BACKEND;
+    }
+
+    /**
+     * @return The backend used for SHA-512.
+     */
+    public static HashBackend getSha512Backend()
+    {
+        return Sha512Holder.BACKEND;
+    }
+
+    /**
+     * @return A new SHA-256 function of the selected backend.
+     */
+    public static BlockHashFunction newSha256()
+    {
+        return Sha256Holder.FACTORY.get();
+    }
+
+    /**
+     * @return A new SHA-512 function of the selected backend.
+     */
+    public static BlockHashFunction newSha512()
+    {
+        return Sha512Holder.FACTORY.get();
+    }
+
+    private static final class Sha256Holder
+    {
+        static final HashBackend BACKEND = select(HashBackends::sha256,
+                KAT_SHA256);
+        static final Supplier<BlockHashFunction> FACTORY = sha256(BACKEND);
+    }
+
+    private static final class Sha512Holder
+    {
+        static final HashBackend BACKEND = select(HashBackends::sha512,
+                KAT_SHA512);
+        static final Supplier<BlockHashFunction> FACTORY = sha512(BACKEND);
+    }
+
+    private static Supplier<BlockHashFunction> sha256(HashBackend backend)
+    {
+        return backend == HashBackend.JDK ? MessageDigestFunction::sha256
+                : Sha256::new;
+    }
+
+    private static Supplier<BlockHashFunction> sha512(HashBackend backend)
+    {
+        return backend == HashBackend.JDK ? MessageDigestFunction::sha512
+                : Sha512::new;
+    }
+
+    private interface FactoryLookup
+    {
+        Supplier<BlockHashFunction> forBackend(HashBackend backend);
+    }
+
+    private static HashBackend select(FactoryLookup factories,
+            byte[][] expected)
+    {
+        HashBackend preferred = preferredBackend();
+        if (passesSelfTest(factories.forBackend(preferred), expected)) {
+            return preferred;
+        }
+
+        HashBackend other = preferred == HashBackend.JDK ? HashBackend.JCIPH
+                : HashBackend.JDK;
+        if (passesSelfTest(factories.forBackend(other), expected)) {
+            return other;
+        }
+
+        throw new IllegalStateException("no working implementation");
+    }
+
+    private static HashBackend preferredBackend()
+    {
+        String value = System.getProperty(BACKEND_PROPERTY, "auto");
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "jdk":
+                return HashBackend.JDK;
+            case "jciph":
+                return HashBackend.JCIPH;
+            case "auto":
+                return hasShaInstructions() ? HashBackend.JDK
+                        : HashBackend.JCIPH;
+            default:
+                throw new IllegalStateException("invalid value of "
+                        + BACKEND_PROPERTY + ": " + value);
+        }
+    }
+
+    private static boolean hasShaInstructions()
+    {
+        // the HotSpot bean is obtained through reflection, so that this class
+        // does not link against com.sun.management on other JVMs; unlike the
+        // platform MBean server, the bean alone does not start JMX
+        try {
+            Class<? extends PlatformManagedObject> type = Class
+                    .forName("com.sun.management.HotSpotDiagnosticMXBean")
+                    .asSubclass(PlatformManagedObject.class);
+            Object bean = ManagementFactory.getPlatformMXBean(type);
+            Object option = type.getMethod("getVMOption", String.class)
+                    .invoke(bean, "UseSHA");
+            Object value = Class.forName("com.sun.management.VMOption")
+                    .getMethod("getValue").invoke(option);
+            return Boolean.parseBoolean(String.valueOf(value));
+        } catch (ReflectiveOperationException | RuntimeException
+                | LinkageError e) {
+            // not HotSpot, or the management classes are unavailable
+            return false;
+        }
+    }
+
+    private static boolean passesSelfTest(Supplier<BlockHashFunction> factory,
+            byte[][] expected)
+    {
+        try {
+            BlockHashFunction function = factory.get();
+            if (!Arrays.equals(expected[0], function.hash(KAT_SHORT))
+                    || !Arrays.equals(expected[1], function.hash(KAT_LONG))) {
+                return false;
+            }
+
+            // the same message again, streamed in uneven parts
+            function.reset();
+            function.digest(KAT_LONG, 0, 1);
+            function.digest(KAT_LONG, 1, 70);
+            function.digest(KAT_LONG, 71, KAT_LONG.length - 71);
+            return Arrays.equals(expected[1], function.finish());
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static byte[] ascii(String s)
+    {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] hex(String s)
+    {
+        byte[] result = new byte[s.length() / 2];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2),
+                    16);
+        }
+
+        return result;
+    }
+}
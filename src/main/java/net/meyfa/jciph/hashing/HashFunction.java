@@ -1,5 +1,8 @@
 package net.meyfa.jciph.hashing;
 
+import java.util.Arrays;
+
+
 /**
  * Abstract superclass for hash functions.
  */
@@ -13,4 +16,35 @@ public abstract class HashFunction
      * @return The hash, as a byte array.
      */
     public abstract byte[] hash(byte[] message);
+
+    /**
+     * Hashes the given range of the input array and writes the computed result
+     * into the output array.
+     *
+     * <p>
+     * The default implementation copies the range and calls
+     * {@link #hash(byte[])}. Subclasses may override it to avoid these
+     * allocations.
+     *
+     * @param message The array containing the message to hash.
+     * @param off The index of the message's first byte.
+     * @param len The message length.
+     * @param out The array to write the hash into.
+     * @param outOff The index at which to write the hash.
+     * @return The number of bytes written, i.e. the hash length.
+     * @throws IndexOutOfBoundsException If the message range exceeds the
+     *             input array, or if the hash does not fit into the output
+     *             array.
+     */
+    public int hash(byte[] message, int off, int len, byte[] out, int outOff)
+    {
+        if (off < 0 || len < 0 || len > message.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        byte[] result = hash(Arrays.copyOfRange(message, off, off + len));
+        System.arraycopy(result, 0, out, outOff, result.length);
+
+        return result.length;
+    }
 }
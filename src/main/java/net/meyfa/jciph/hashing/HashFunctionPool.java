@@ -0,0 +1,98 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+
+/**
+ * A bounded, lock-free pool of hash function instances, for classes that
+ * share one set of instances among any number of threads.
+ *
+ * <p>
+ * The instances are kept in a fixed number of slots (stripes). A thread takes
+ * the instance out of the slot selected by its thread id, and puts it back
+ * when done. If the slot is empty because another thread is using its
+ * instance, the next slot is tried; if that is empty as well, a new instance
+ * is created. Instances that find their slot occupied when they are put back
+ * are dropped. Hence no thread ever waits for another, and the number of
+ * retained instances is bounded by the number of slots.
+ */
+final class HashFunctionPool
+{
+    private final Supplier<? extends BlockHashFunction> factory;
+    private final AtomicReferenceArray<BlockHashFunction> slots;
+    private final int mask;
+
+    /**
+     * @param factory A factory for the hash function instances.
+     * @param stripes The number of slots, which is rounded up to the next
+     *            power of two.
+     * @throws IllegalArgumentException If the number of stripes is not
+     *             between 1 and 65536.
+     */
+    HashFunctionPool(Supplier<? extends BlockHashFunction> factory,
+            int stripes)
+    {
+        if (stripes <= 0 || stripes > 1 << 16) {
+            throw new IllegalArgumentException("invalid stripe count");
+        }
+
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+
+        this.factory = factory;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return Twice the number of available processors, a stripe count that
+     *         keeps collisions between running threads rare.
+     */
+    static int defaultStripes()
+    {
+        return 2 * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Takes an instance out of the pool, or creates one if the current
+     * thread's slots are empty. It must be returned through
+     * {@link #release(BlockHashFunction)} by the same thread, or not at all.
+     *
+     * @return The instance, for exclusive use by the current thread.
+     */
+    BlockHashFunction acquire()
+    {
+        int slot = slot();
+
+        BlockHashFunction function = slots.getAndSet(slot, null);
+        if (function == null) {
+            function = slots.getAndSet((slot + 1) & mask, null);
+        }
+
+        return function != null ? function : factory.get();
+    }
+
+    /**
+     * Puts an instance obtained from {@link #acquire()} back into the
+     * current thread's slot, or drops it if the slot is occupied.
+     *
+     * @param function The instance.
+     */
+    void release(BlockHashFunction function)
+    {
+        // when occupied, the instance is dropped and left to the GC
+        slots.compareAndSet(slot(), null, function);
+    }
+
+    private int slot()
+    {
+        // spread the thread id bits, since ids are often sequential
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,131 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A {@link HashMetricsListener} that aggregates the work of any number of
+ * hash functions: counters for the bytes digested, blocks compressed and
+ * hashes finished, and histograms of the message lengths and of the time
+ * taken per hash.
+ *
+ * <p>
+ * Instances of this class are thread-safe and can be shared by all hash
+ * functions of an application, e.g. with a {@link ConcurrentHashFunction}
+ * whose factory sets the listener on every instance it creates.
+ *
+ * <p>
+ * Subclasses may additionally report the metrics to a monitoring system, as
+ * the {@code JfrHashMetrics} of the optional jciph-jfr module does for JDK
+ * Flight Recorder. Use {@link #create()} to pick up such a subclass when it is
+ * on the class path, and {@link #close()} to stop its reporting.
+ */
+public class HashMetrics implements HashMetricsListener, AutoCloseable
+{
+    private final LongAdder bytesDigested = new LongAdder();
+    private final LongAdder blocksCompressed = new LongAdder();
+    private final LongAdder hashesFinished = new LongAdder();
+
+    private final LogHistogram messageLengths = new LogHistogram();
+    private final LogHistogram latencies = new LogHistogram();
+
+    /**
+     * Creates new metrics, using the first {@link HashMetrics} subclass
+     * registered as a service provider whose JVM requirements are met, or
+     * this class if there is none.
+     *
+     * @return The new metrics.
+     */
+    public static HashMetrics create()
+    {
+        try {
+            for (HashMetrics metrics : ServiceLoader.load(HashMetrics.class)) {
+                return metrics;
+            }
+        } catch (ServiceConfigurationError | LinkageError e) {
+            // e.g. a provider that needs Flight Recorder on a JVM without it
+        }
+
+        return new HashMetrics();
+    }
+
+    @Override
+    public void digested(long bytes, int blocks)
+    {
+        bytesDigested.add(bytes);
+        blocksCompressed.add(blocks);
+    }
+
+    @Override
+    public void finished(long messageLength, long nanos)
+    {
+        hashesFinished.increment();
+        messageLengths.record(messageLength);
+        latencies.record(nanos);
+    }
+
+    /**
+     * @return The number of bytes digested.
+     */
+    public long getBytesDigested()
+    {
+        return bytesDigested.sum();
+    }
+
+    /**
+     * @return The number of message blocks compressed, not counting the
+     *         padding blocks compressed when finishing.
+     */
+    public long getBlocksCompressed()
+    {
+        return blocksCompressed.sum();
+    }
+
+    /**
+     * @return The number of hashes finished.
+     */
+    public long getHashesFinished()
+    {
+        return hashesFinished.sum();
+    }
+
+    /**
+     * @return The histogram of the lengths, in bytes, of the hashed messages.
+     */
+    public LogHistogram getMessageLengthHistogram()
+    {
+        return messageLengths;
+    }
+
+    /**
+     * @return The histogram of the time taken per hash, in nanoseconds,
+     *         measured from the first data added to the end of finishing.
+     */
+    public LogHistogram getLatencyHistogram()
+    {
+        return latencies;
+    }
+
+    /**
+     * Resets all counters and histograms.
+     */
+    public void reset()
+    {
+        bytesDigested.reset();
+        blocksCompressed.reset();
+        hashesFinished.reset();
+        messageLengths.reset();
+        latencies.reset();
+    }
+
+    /**
+     * Stops reporting the metrics to any monitoring system. This does nothing
+     * unless overridden; the metrics remain readable either way.
+     */
+    @Override
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,32 @@
+package net.meyfa.jciph.hashing;
+
+/**
+ * Receives information about the work done by a {@link BlockHashFunction},
+ * see {@link BlockHashFunction#setMetricsListener(HashMetricsListener)}.
+ *
+ * <p>
+ * The methods are called on the hashing thread, in the middle of the hash
+ * computation, so they should return quickly. Listeners shared by multiple
+ * functions must be thread-safe.
+ */
+public interface HashMetricsListener
+{
+    /**
+     * Called when data is added to be hashed.
+     *
+     * @param bytes The number of bytes added.
+     * @param blocks The number of message blocks these bytes complete, which
+     *            are compressed now. The padding blocks compressed when
+     *            finishing are not included.
+     */
+    void digested(long bytes, int blocks);
+
+    /**
+     * Called when a hash has been finished.
+     *
+     * @param messageLength The number of bytes hashed since the last reset.
+     * @param nanos The time elapsed since the first data was added, in
+     *            nanoseconds, or 0 if no data was added.
+     */
+    void finished(long messageLength, long nanos);
+}
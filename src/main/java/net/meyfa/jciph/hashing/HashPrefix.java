@@ -0,0 +1,89 @@
+package net.meyfa.jciph.hashing;
+
+/**
+ * A message prefix prepared for hashing many messages that start with it,
+ * such as a protocol preamble or a tenant identifier.
+ *
+ * <p>
+ * The prefix's full blocks are compressed only once, and the resulting
+ * chaining state and the remaining bytes are kept. Hashing a message that
+ * starts with the prefix then only restores that state and processes the
+ * rest of the message. To hash messages with many different prefixes, use a
+ * {@link HashPrefixCache}.
+ *
+ * <p>
+ * Instances are immutable and can be shared by any number of threads and
+ * hash function instances, as long as these are of the same class.
+ */
+public final class HashPrefix
+{
+    private final Class<?> functionClass;
+    private final int length;
+    private final byte[] state;
+
+    /**
+     * Prepares the given prefix for use with the given hash function. The
+     * function's state is reset.
+     *
+     * @param function The hash function to compress the prefix with.
+     * @param prefix The prefix.
+     * @throws UnsupportedOperationException If the function does not support
+     *             saving its state.
+     */
+    public HashPrefix(BlockHashFunction function, byte[] prefix)
+    {
+        function.reset();
+        function.digest(prefix);
+
+        this.functionClass = function.getClass();
+        this.length = prefix.length;
+        this.state = function.saveState();
+
+        function.reset();
+    }
+
+    /**
+     * @return The length of the prefix, in bytes.
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Resets the given function to the state it would have after digesting
+     * the prefix. The rest of the message can then be added through
+     * {@link BlockHashFunction#digest(byte[])}, and the hash obtained through
+     * {@link BlockHashFunction#finish()}.
+     *
+     * @param function The hash function to start.
+     * @throws IllegalArgumentException If the prefix was prepared for a
+     *             different hash function.
+     */
+    public void start(BlockHashFunction function)
+    {
+        if (function.getClass() != functionClass) {
+            throw new IllegalArgumentException(
+                    "prefix belongs to a different hash function");
+        }
+
+        function.restoreState(state);
+    }
+
+    /**
+     * Computes the hash of the prefix followed by the given payload.
+     *
+     * @param function The hash function to use.
+     * @param payload The rest of the message.
+     * @return The hash of the whole message.
+     * @throws IllegalArgumentException If the prefix was prepared for a
+     *             different hash function.
+     */
+    public byte[] hash(BlockHashFunction function, byte[] payload)
+    {
+        start(function);
+        function.digest(payload);
+
+        return function.finish();
+    }
+}
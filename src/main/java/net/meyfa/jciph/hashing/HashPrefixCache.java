@@ -0,0 +1,97 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.function.Supplier;
+
+
+/**
+ * A bounded cache of prepared {@link HashPrefix}es, for hashing messages that
+ * share one of several long, fixed prefixes.
+ *
+ * <p>
+ * The cache never holds more prefixes than its capacity, and evicts them as
+ * described in {@link SegmentedLruCache}. Prefixes are prepared outside of any
+ * lock, and the hashes in {@link #hash(byte[], byte[])} computed, with hash
+ * function instances from a {@link HashFunctionPool} filled by the factory
+ * given to the constructor.
+ *
+ * <p>
+ * Looking a prefix up still reads all of its bytes, but that is much cheaper
+ * than compressing them. Callers that know their prefix in advance can keep
+ * the result of {@link #get(byte[])} and skip the lookup as well.
+ *
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class HashPrefixCache
+{
+    private final HashFunctionPool functions;
+    private final SegmentedLruCache<HashPrefix> cache;
+
+    /**
+     * Constructs a new prefix cache.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @param capacity The maximum number of prefixes to keep.
+     * @throws IllegalArgumentException If the capacity is not positive.
+     */
+    public HashPrefixCache(Supplier<? extends BlockHashFunction> factory,
+            int capacity)
+    {
+        this.cache = new SegmentedLruCache<>(capacity);
+        this.functions = new HashFunctionPool(factory,
+                HashFunctionPool.defaultStripes());
+    }
+
+    /**
+     * Returns the prepared form of the given prefix, preparing and caching it
+     * if it is not cached already.
+     *
+     * @param prefix The prefix.
+     * @return The prepared prefix.
+     */
+    public HashPrefix get(byte[] prefix)
+    {
+        return cache.get(prefix, p -> {
+            BlockHashFunction function = functions.acquire();
+            HashPrefix prepared = new HashPrefix(function, p);
+            functions.release(function);
+            return prepared;
+        });
+    }
+
+    /**
+     * Computes the hash of the given prefix followed by the given payload,
+     * preparing and caching the prefix if it is not cached already.
+     *
+     * @param prefix The prefix.
+     * @param payload The rest of the message.
+     * @return The hash of the whole message.
+     */
+    public byte[] hash(byte[] prefix, byte[] payload)
+    {
+        HashPrefix prepared = get(prefix);
+
+        BlockHashFunction function = functions.acquire();
+        byte[] result = prepared.hash(function, payload);
+        functions.release(function);
+
+        return result;
+    }
+
+    /**
+     * @return The number of cached prefixes.
+     */
+    public int size()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Removes all cached prefixes.
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+}
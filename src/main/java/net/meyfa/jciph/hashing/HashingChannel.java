@@ -0,0 +1,100 @@
+package net.meyfa.jciph.hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * A writable channel that adds all bytes written to it to a
+ * {@link BlockHashFunction}. It either passes the bytes on to another channel
+ * or, if constructed without one, acts as a sink that only hashes them.
+ *
+ * <p>
+ * Buffers are passed to the function through
+ * {@link BlockHashFunction#digest(ByteBuffer)}, so neither heap nor direct
+ * buffers are copied. When writing to another channel, only those bytes are
+ * hashed that the channel actually accepted.
+ *
+ * <p>
+ * The function is neither reset nor finished by this channel. Call
+ * {@link BlockHashFunction#finish()} on it once all data has been written to
+ * obtain the hash.
+ */
+public class HashingChannel implements WritableByteChannel
+{
+    private final WritableByteChannel channel;
+    private final BlockHashFunction function;
+    private boolean open = true;
+
+    /**
+     * Constructs a channel that only hashes the bytes written to it.
+     *
+     * @param function The function to add the data to.
+     */
+    public HashingChannel(BlockHashFunction function)
+    {
+        this(null, function);
+    }
+
+    /**
+     * Constructs a channel that hashes the bytes written to it and passes them
+     * on to the given channel.
+     *
+     * @param channel The channel to write to, or null to only hash.
+     * @param function The function to add the data to.
+     */
+    public HashingChannel(WritableByteChannel channel,
+            BlockHashFunction function)
+    {
+        this.channel = channel;
+        this.function = function;
+    }
+
+    /**
+     * @return The function that the data is added to.
+     */
+    public BlockHashFunction getHashFunction()
+    {
+        return function;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException
+    {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+
+        if (channel == null) {
+            int n = src.remaining();
+            function.digest(src);
+            return n;
+        }
+
+        ByteBuffer written = src.duplicate();
+        int n = channel.write(src);
+        if (n > 0) {
+            written.limit(written.position() + n);
+            function.digest(written);
+        }
+
+        return n;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return open && (channel == null || channel.isOpen());
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        open = false;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package net.meyfa.jciph.hashing;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * An input stream that adds all bytes read through it to a
+ * {@link BlockHashFunction}, so that data can be hashed while it is being
+ * consumed.
+ *
+ * <p>
+ * Bytes read into an array are passed to the function by array range, without
+ * copying. Skipped bytes are read and hashed as well, so that the hash always
+ * covers the complete data. Marking is not supported.
+ *
+ * <p>
+ * The function is neither reset nor finished by this stream. Call
+ * {@link BlockHashFunction#finish()} on it once the stream has been consumed
+ * to obtain the hash.
+ */
+public class HashingInputStream extends FilterInputStream
+{
+    private final BlockHashFunction function;
+    private final byte[] single = new byte[1];
+
+    /**
+     * @param in The stream to read from.
+     * @param function The function to add the data to.
+     */
+    public HashingInputStream(InputStream in, BlockHashFunction function)
+    {
+        super(in);
+        this.function = function;
+    }
+
+    /**
+     * @return The function that the data is added to.
+     */
+    public BlockHashFunction getHashFunction()
+    {
+        return function;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        int b = in.read();
+        if (b >= 0) {
+            single[0] = (byte) b;
+            function.digest(single, 0, 1);
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            function.digest(b, off, n);
+        }
+
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        if (n <= 0) {
+            return 0;
+        }
+
+        byte[] buf = new byte[(int) Math.min(n, 8192)];
+
+        long skipped = 0;
+        while (skipped < n) {
+            int count = read(buf, 0, (int) Math.min(n - skipped, buf.length));
+            if (count < 0) {
+                break;
+            }
+            skipped += count;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit)
+    {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException
+    {
+        throw new IOException("mark/reset not supported");
+    }
+}
@@ -0,0 +1,60 @@
+package net.meyfa.jciph.hashing;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * An output stream that adds all bytes written through it to a
+ * {@link BlockHashFunction}, so that data can be hashed while it is being
+ * stored elsewhere.
+ *
+ * <p>
+ * Arrays are passed on to the underlying stream and to the function as they
+ * are, without copying.
+ *
+ * <p>
+ * The function is neither reset nor finished by this stream. Call
+ * {@link BlockHashFunction#finish()} on it once all data has been written to
+ * obtain the hash.
+ */
+public class HashingOutputStream extends FilterOutputStream
+{
+    private final BlockHashFunction function;
+    private final byte[] single = new byte[1];
+
+    /**
+     * @param out The stream to write to.
+     * @param function The function to add the data to.
+     */
+    public HashingOutputStream(OutputStream out, BlockHashFunction function)
+    {
+        super(out);
+        this.function = function;
+    }
+
+    /**
+     * @return The function that the data is added to.
+     */
+    public BlockHashFunction getHashFunction()
+    {
+        return function;
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        out.write(b);
+
+        single[0] = (byte) b;
+        function.digest(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        out.write(b, off, len);
+        function.digest(b, off, len);
+    }
+}
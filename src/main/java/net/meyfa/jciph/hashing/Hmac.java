@@ -0,0 +1,268 @@
+package net.meyfa.jciph.hashing;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+
+/**
+ * HMAC (RFC 2104) on top of a {@link BlockHashFunction}, e.g. HMAC-SHA256 with
+ * {@code new Hmac(new Sha256(), key)}.
+ *
+ * <p>
+ * The key is given as an {@link HmacKey}, whose padded key blocks are
+ * compressed only once. Every MAC then only restores their chaining states
+ * and processes the message and the inner hash. To compute MACs under many
+ * keys, use an {@link HmacKeyCache}.
+ *
+ * <p>
+ * Call {@link #digest(byte[])} (or one of its overloads) to add data, and
+ * {@link #finish()} to obtain the MAC, after which the next MAC under the
+ * same key can be computed. Like the underlying hash function, instances of
+ * this class are not thread-safe.
+ */
+public class Hmac extends HashFunction
+{
+    private final BlockHashFunction function;
+    private final int macLength;
+
+    private final byte[] innerHash;
+    private final byte[] expectedMac;
+
+    private HmacKey key;
+
+    /**
+     * Constructs a new HMAC function without a key. A key must be set through
+     * {@link #setKey(HmacKey)} before use.
+     *
+     * @param function The hash function to use. It must not be used
+     *            elsewhere while this object is in use.
+     * @throws IllegalArgumentException If the function does not support
+     *             saving its chaining state.
+     */
+    public Hmac(BlockHashFunction function)
+    {
+        if (function.getChainingStateLength() < 0
+                || function.getDigestLength() < 0) {
+            throw new IllegalArgumentException(
+                    "hash function does not support saving its state");
+        }
+
+        this.function = function;
+        this.macLength = function.getDigestLength();
+        this.innerHash = new byte[macLength];
+        this.expectedMac = new byte[macLength];
+    }
+
+    /**
+     * Constructs a new HMAC function with the given key.
+     *
+     * @param function The hash function to use. It must not be used
+     *            elsewhere while this object is in use.
+     * @param key The secret key.
+     * @throws IllegalArgumentException If the function does not support
+     *             saving its chaining state.
+     */
+    public Hmac(BlockHashFunction function, byte[] key)
+    {
+        this(function);
+        setKey(key);
+    }
+
+    /**
+     * Constructs a new HMAC function with the given prepared key.
+     *
+     * @param function The hash function to use. It must not be used
+     *            elsewhere while this object is in use.
+     * @param key The prepared key.
+     * @throws IllegalArgumentException If the function does not support
+     *             saving its chaining state, or if the key was prepared for a
+     *             different hash function.
+     */
+    public Hmac(BlockHashFunction function, HmacKey key)
+    {
+        this(function);
+        setKey(key);
+    }
+
+    /**
+     * @return The length, in bytes, of the computed MACs.
+     */
+    public int getMacLength()
+    {
+        return macLength;
+    }
+
+    /**
+     * Prepares the given key and uses it for all following MACs. Any data
+     * added so far is discarded.
+     *
+     * @param key The secret key.
+     */
+    public void setKey(byte[] key)
+    {
+        setKey(new HmacKey(function, key));
+    }
+
+    /**
+     * Uses the given prepared key for all following MACs. Any data added so
+     * far is discarded.
+     *
+     * @param key The prepared key.
+     * @throws IllegalArgumentException If the key was prepared for a different
+     *             hash function.
+     */
+    public void setKey(HmacKey key)
+    {
+        if (key.getFunctionClass() != function.getClass()) {
+            throw new IllegalArgumentException(
+                    "key was prepared for a different hash function");
+        }
+
+        this.key = key;
+        reset();
+    }
+
+    /**
+     * Discards the data added so far, so that computation can begin anew
+     * under the current key.
+     *
+     * @throws IllegalStateException If no key has been set.
+     */
+    public void reset()
+    {
+        function.restoreMidstate(requireKey().getInnerState(), 0);
+    }
+
+    /**
+     * Add data to be authenticated.
+     *
+     * @param partialMessage The message data to add.
+     * @throws IllegalStateException If no key has been set.
+     */
+    public void digest(byte[] partialMessage)
+    {
+        digest(partialMessage, 0, partialMessage.length);
+    }
+
+    /**
+     * Add the given range of the array to the data to be authenticated.
+     *
+     * @param partialMessage The array containing the message data to add.
+     * @param off The index of the first byte to add.
+     * @param len The number of bytes to add.
+     * @throws IndexOutOfBoundsException If the range exceeds the array.
+     * @throws IllegalStateException If no key has been set.
+     */
+    public void digest(byte[] partialMessage, int off, int len)
+    {
+        requireKey();
+        function.digest(partialMessage, off, len);
+    }
+
+    /**
+     * Add the remaining bytes of the given buffer to the data to be
+     * authenticated. Upon return, the buffer's position equals its limit.
+     *
+     * @param partialMessage The buffer containing the message data to add.
+     * @throws IllegalStateException If no key has been set.
+     */
+    public void digest(ByteBuffer partialMessage)
+    {
+        requireKey();
+        function.digest(partialMessage);
+    }
+
+    /**
+     * Finalizes the computation with the data that was added until now.
+     *
+     * @return The MAC, as a byte array.
+     * @throws IllegalStateException If no key has been set.
+     */
+    public byte[] finish()
+    {
+        byte[] result = new byte[macLength];
+        finishInto(result, 0);
+
+        return result;
+    }
+
+    /**
+     * Finalizes the computation with the data that was added until now and
+     * writes the MAC into the given array.
+     *
+     * @param out The array to write the MAC into.
+     * @param outOff The index at which to write the MAC.
+     * @return The number of bytes written, i.e. the MAC length.
+     * @throws IndexOutOfBoundsException If the MAC does not fit into the
+     *             array.
+     * @throws IllegalStateException If no key has been set.
+     */
+    public int finishInto(byte[] out, int outOff)
+    {
+        HmacKey key = requireKey();
+        if (outOff < 0 || macLength > out.length - outOff) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        function.finishInto(innerHash, 0);
+
+        function.restoreMidstate(key.getOuterState(), 0);
+        function.digest(innerHash, 0, macLength);
+        function.finishInto(out, outOff);
+
+        function.restoreMidstate(key.getInnerState(), 0);
+
+        return macLength;
+    }
+
+    /**
+     * Computes the MAC of the given message under the current key.
+     *
+     * @param message The message to authenticate.
+     * @return The MAC, as a byte array.
+     * @throws IllegalStateException If no key has been set.
+     */
+    @Override
+    public byte[] hash(byte[] message)
+    {
+        reset();
+        digest(message);
+
+        return finish();
+    }
+
+    @Override
+    public int hash(byte[] message, int off, int len, byte[] out, int outOff)
+    {
+        reset();
+        digest(message, off, len);
+
+        return finishInto(out, outOff);
+    }
+
+    /**
+     * Checks whether the given MAC is the MAC of the given message under the
+     * current key. The comparison takes time independent of the position of
+     * the first mismatch.
+     *
+     * @param message The message that was authenticated.
+     * @param mac The MAC to check.
+     * @return Whether the MAC is correct.
+     * @throws IllegalStateException If no key has been set.
+     */
+    public boolean verify(byte[] message, byte[] mac)
+    {
+        hash(message, 0, message.length, expectedMac, 0);
+
+        return MessageDigest.isEqual(expectedMac, mac);
+    }
+
+    private HmacKey requireKey()
+    {
+        if (key == null) {
+            throw new IllegalStateException("no key set");
+        }
+
+        return key;
+    }
+}
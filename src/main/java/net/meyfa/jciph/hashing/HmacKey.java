@@ -0,0 +1,102 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.Arrays;
+
+
+/**
+ * A key prepared for use with {@link Hmac}.
+ *
+ * <p>
+ * HMAC hashes the key, XORed with a constant pad, in front of the message
+ * (inner hash), and again in front of the inner hash (outer hash). Since the
+ * padded key fills exactly one block, it contributes the same chaining state
+ * to every message. This class compresses both padded key blocks once and
+ * keeps the resulting chaining states, so that computing a MAC only needs to
+ * restore them instead of compressing two extra blocks.
+ *
+ * <p>
+ * Instances are immutable and can be shared by any number of threads and
+ * {@link Hmac} instances, as long as these use the same hash function class.
+ */
+public final class HmacKey
+{
+    private static final byte IPAD = 0x36;
+    private static final byte OPAD = 0x5c;
+
+    private final Class<?> functionClass;
+    private final byte[] innerState;
+    private final byte[] outerState;
+
+    /**
+     * Prepares the given key for use with the given hash function. The
+     * function's state is reset.
+     *
+     * @param function The hash function to compute the key's states with.
+     * @param key The secret key, which may have any length.
+     * @throws IllegalArgumentException If the function does not support
+     *             saving its chaining state.
+     */
+    public HmacKey(BlockHashFunction function, byte[] key)
+    {
+        int stateLength = function.getChainingStateLength();
+        if (stateLength < 0 || function.getDigestLength() < 0) {
+            throw new IllegalArgumentException(
+                    "hash function does not support saving its state");
+        }
+
+        // keys longer than a block are hashed first, then padded with zeros
+        int blockSize = function.getBlockSize();
+        byte[] block = new byte[blockSize];
+        if (key.length > blockSize) {
+            function.hash(key, 0, key.length, block, 0);
+        } else {
+            System.arraycopy(key, 0, block, 0, key.length);
+        }
+
+        this.functionClass = function.getClass();
+        this.innerState = new byte[stateLength];
+        this.outerState = new byte[stateLength];
+
+        for (int i = 0; i < blockSize; ++i) {
+            block[i] ^= IPAD;
+        }
+        function.reset();
+        function.digest(block);
+        function.saveMidstate(innerState, 0);
+
+        for (int i = 0; i < blockSize; ++i) {
+            block[i] ^= IPAD ^ OPAD;
+        }
+        function.reset();
+        function.digest(block);
+        function.saveMidstate(outerState, 0);
+
+        // do not leave key material behind
+        Arrays.fill(block, (byte) 0);
+        function.reset();
+    }
+
+    /**
+     * @return The class of the hash function this key was prepared for.
+     */
+    Class<?> getFunctionClass()
+    {
+        return functionClass;
+    }
+
+    /**
+     * @return The chaining state after the inner padded key block.
+     */
+    byte[] getInnerState()
+    {
+        return innerState;
+    }
+
+    /**
+     * @return The chaining state after the outer padded key block.
+     */
+    byte[] getOuterState()
+    {
+        return outerState;
+    }
+}
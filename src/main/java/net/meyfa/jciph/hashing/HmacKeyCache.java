@@ -0,0 +1,70 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.function.Supplier;
+
+
+/**
+ * A bounded cache of prepared {@link HmacKey}s, for services that compute or
+ * verify MACs under many different keys.
+ *
+ * <p>
+ * The cache never holds more keys than its capacity, and evicts them as
+ * described in {@link SegmentedLruCache}. Keys are prepared outside of any
+ * lock, each with a new hash function instance from the factory given to the
+ * constructor, so that no instances are kept per thread.
+ *
+ * <p>
+ * Note that the cache holds copies of the raw keys, since they are needed to
+ * tell the cached entries apart.
+ *
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class HmacKeyCache
+{
+    private final Supplier<? extends BlockHashFunction> factory;
+    private final SegmentedLruCache<HmacKey> cache;
+
+    /**
+     * Constructs a new key cache.
+     *
+     * @param factory A factory for the hash function instances to prepare the
+     *            keys with, e.g. {@code Sha256::new}.
+     * @param capacity The maximum number of keys to keep.
+     * @throws IllegalArgumentException If the capacity is not positive.
+     */
+    public HmacKeyCache(Supplier<? extends BlockHashFunction> factory,
+            int capacity)
+    {
+        this.cache = new SegmentedLruCache<>(capacity);
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the prepared form of the given key, preparing and caching it if
+     * it is not cached already.
+     *
+     * @param key The secret key.
+     * @return The prepared key.
+     */
+    public HmacKey get(byte[] key)
+    {
+        return cache.get(key, k -> new HmacKey(factory.get(), k));
+    }
+
+    /**
+     * @return The number of cached keys.
+     */
+    public int size()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Removes all cached keys.
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+}
@@ -0,0 +1,145 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+
+/**
+ * A histogram of non-negative values, such as latencies or sizes, with
+ * buckets on a logarithmic scale, like HdrHistogram.
+ *
+ * <p>
+ * Values below 32 have their own buckets. Above that, every power of two is
+ * divided into 32 buckets of equal width, so the values reported for
+ * percentiles are at most about 3% larger than the recorded values. The
+ * histogram has a fixed size, recording allocates nothing, and all values up
+ * to {@code Long.MAX_VALUE} can be recorded.
+ *
+ * <p>
+ * Instances of this class are thread-safe. Reading while values are being
+ * recorded yields approximate results.
+ */
+public class LogHistogram
+{
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // buckets for the values below SUB_BUCKETS, then for every exponent
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS)
+            * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records the given value. Negative values are recorded as 0.
+     *
+     * @param value The value to record.
+     */
+    public void record(long value)
+    {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(bucketOf(value));
+        max.accumulate(value);
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public long getTotalCount()
+    {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            total += counts.get(i);
+        }
+
+        return total;
+    }
+
+    /**
+     * @return The largest recorded value, or 0 if there is none.
+     */
+    public long getMaxValue()
+    {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded
+     * values lie. The result is the upper end of the bucket containing that
+     * value, but not larger than the largest recorded value.
+     *
+     * @param percentile The percentage, between 0 and 100.
+     * @return The value at the percentile, or 0 if no values were recorded.
+     * @throws IllegalArgumentException If the percentile is out of range.
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("invalid percentile");
+        }
+
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), getMaxValue());
+            }
+        }
+
+        return getMaxValue();
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts.set(i, 0);
+        }
+        max.reset();
+    }
+
+    private static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        // the top SUB_BUCKET_BITS bits below the highest one bit
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS))
+                & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    private static long highestValueOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int mantissa = bucket % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+
+        long lowest = (long) (SUB_BUCKETS + mantissa) << shift;
+        return lowest + ((1L << shift) - 1);
+    }
+}
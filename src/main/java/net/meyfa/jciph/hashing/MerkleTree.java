@@ -0,0 +1,294 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+
+/**
+ * An in-memory Merkle tree over a list of records, which can produce and
+ * verify inclusion proofs.
+ *
+ * <p>
+ * The tree has the same shape and hashing as the trees of
+ * {@link TreeHasher}, with one leaf per record: leaves are hashed as
+ * {@code H(0x00 || record)}, inner nodes as {@code H(0x01 || left || right)},
+ * and a node without a partner on its level is promoted as it is. So the
+ * root equals that of RFC 6962.
+ *
+ * <p>
+ * Every level is stored as one flat array of the concatenated node hashes,
+ * rather than as an object per node, and is computed in parallel, every task
+ * of up to 1024 nodes using its own hash function instance. A level holds at
+ * most {@code Integer.MAX_VALUE / digestLength} nodes, e.g. over 67 million
+ * for SHA-256.
+ *
+ * <p>
+ * An inclusion proof for a leaf consists of the hashes of its siblings on the
+ * way up to the root, concatenated; levels on which the leaf's ancestor is
+ * promoted contribute nothing. Instances of this class are immutable and
+ * thread-safe.
+ */
+public final class MerkleTree
+{
+    /**
+     * The number of nodes hashed by one task.
+     */
+    private static final int GRAIN = 1024;
+
+    private final int digestLength;
+    private final byte[][] levels;
+
+    private MerkleTree(int digestLength, byte[][] levels)
+    {
+        this.digestLength = digestLength;
+        this.levels = levels;
+    }
+
+    /**
+     * Builds the tree over the given records, running on the common pool.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @param records The records, one per leaf.
+     * @return The tree.
+     * @throws IllegalArgumentException If there are no records or too many,
+     *             or if the created functions do not declare their digest
+     *             length.
+     */
+    public static MerkleTree build(
+            Supplier<? extends BlockHashFunction> factory, byte[][] records)
+    {
+        return build(factory, records, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds the tree over the given records.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @param records The records, one per leaf.
+     * @param pool The pool to compute the nodes on.
+     * @return The tree.
+     * @throws IllegalArgumentException If there are no records or too many,
+     *             or if the created functions do not declare their digest
+     *             length.
+     */
+    public static MerkleTree build(
+            Supplier<? extends BlockHashFunction> factory, byte[][] records,
+            ForkJoinPool pool)
+    {
+        int digestLength = checkDigestLength(factory.get());
+        checkLeafCount(records.length, digestLength);
+
+        byte[] leaves = new byte[records.length * digestLength];
+        pool.invoke(RangeTask.hashEach(0, records.length, GRAIN, factory,
+                (function, i) -> TreeHasher.hashLeaf(function, records[i], 0,
+                        records[i].length, leaves, i * digestLength)));
+
+        return new MerkleTree(digestLength,
+                buildLevels(factory, leaves, digestLength, pool));
+    }
+
+    /**
+     * Builds the tree over leaves that have been hashed already, e.g. when
+     * records are streamed from storage rather than held in memory. Each leaf
+     * hash must have been computed as {@code H(0x00 || record)}.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @param leafHashes The concatenated leaf hashes.
+     * @param pool The pool to compute the nodes on.
+     * @return The tree.
+     * @throws IllegalArgumentException If there are no leaves, if the array
+     *             length is not a multiple of the digest length, or if the
+     *             created functions do not declare their digest length.
+     */
+    public static MerkleTree fromLeafHashes(
+            Supplier<? extends BlockHashFunction> factory, byte[] leafHashes,
+            ForkJoinPool pool)
+    {
+        int digestLength = checkDigestLength(factory.get());
+        if (leafHashes.length % digestLength != 0) {
+            throw new IllegalArgumentException(
+                    "leaf hashes do not match the digest length");
+        }
+        checkLeafCount(leafHashes.length / digestLength, digestLength);
+
+        return new MerkleTree(digestLength, buildLevels(factory,
+                leafHashes.clone(), digestLength, pool));
+    }
+
+    private static int checkDigestLength(BlockHashFunction function)
+    {
+        if (function.getDigestLength() < 0) {
+            throw new IllegalArgumentException(
+                    "hash function does not declare its digest length");
+        }
+
+        return function.getDigestLength();
+    }
+
+    private static void checkLeafCount(int count, int digestLength)
+    {
+        if (count == 0) {
+            throw new IllegalArgumentException("tree has no leaves");
+        }
+        if ((long) count * digestLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many leaves");
+        }
+    }
+
+    private static byte[][] buildLevels(
+            Supplier<? extends BlockHashFunction> factory, byte[] leaves,
+            int digestLength, ForkJoinPool pool)
+    {
+        int count = leaves.length / digestLength;
+        int height = 1;
+        for (int n = count; n > 1; n = (n + 1) / 2) {
+            ++height;
+        }
+
+        byte[][] levels = new byte[height][];
+        levels[0] = leaves;
+
+        for (int level = 1; level < height; ++level) {
+            byte[] below = levels[level - 1];
+            int pairs = count / 2;
+            int next = (count + 1) / 2;
+            byte[] nodes = new byte[next * digestLength];
+
+            pool.invoke(RangeTask.hashEach(0, pairs, GRAIN, factory,
+                    (function, i) -> TreeHasher.hashNode(function,
+                            below, 2 * i * digestLength,
+                            below, (2 * i + 1) * digestLength,
+                            nodes, i * digestLength)));
+            if ((count & 1) != 0) {
+                // promote the lone node
+                System.arraycopy(below, (count - 1) * digestLength, nodes,
+                        pairs * digestLength, digestLength);
+            }
+
+            levels[level] = nodes;
+            count = next;
+        }
+
+        return levels;
+    }
+
+    /**
+     * @return The number of leaves.
+     */
+    public int getLeafCount()
+    {
+        return levels[0].length / digestLength;
+    }
+
+    /**
+     * @return The length, in bytes, of the node hashes.
+     */
+    public int getDigestLength()
+    {
+        return digestLength;
+    }
+
+    /**
+     * @return The root hash.
+     */
+    public byte[] getRoot()
+    {
+        return levels[levels.length - 1].clone();
+    }
+
+    /**
+     * Returns the inclusion proof for the given leaf: the hashes of its
+     * siblings, from the bottom up, concatenated.
+     *
+     * @param index The index of the leaf.
+     * @return The proof.
+     * @throws IndexOutOfBoundsException If there is no such leaf.
+     */
+    public byte[] getProof(int index)
+    {
+        int count = getLeafCount();
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        byte[] proof = new byte[proofLength(index, count) * digestLength];
+        int off = 0;
+        for (int level = 0; count > 1; ++level) {
+            int sibling = index ^ 1;
+            if (sibling < count) {
+                System.arraycopy(levels[level], sibling * digestLength, proof,
+                        off, digestLength);
+                off += digestLength;
+            }
+            index >>>= 1;
+            count = (count + 1) / 2;
+        }
+
+        return proof;
+    }
+
+    /**
+     * Verifies an inclusion proof produced by {@link #getProof(int)}.
+     *
+     * @param function The hash function the tree was built with.
+     * @param root The root hash of the tree.
+     * @param record The record.
+     * @param index The index of the record's leaf.
+     * @param leafCount The number of leaves of the tree.
+     * @param proof The proof.
+     * @return Whether the record is the leaf at the given index of the tree
+     *         with the given root.
+     * @throws IllegalArgumentException If the function does not declare its
+     *             digest length.
+     */
+    public static boolean verify(BlockHashFunction function, byte[] root,
+            byte[] record, int index, int leafCount, byte[] proof)
+    {
+        int digestLength = checkDigestLength(function);
+        if (index < 0 || index >= leafCount
+                || proof.length != proofLength(index, leafCount)
+                        * digestLength) {
+            return false;
+        }
+
+        byte[] node = new byte[digestLength];
+        TreeHasher.hashLeaf(function, record, 0, record.length, node, 0);
+
+        int off = 0;
+        for (int count = leafCount; count > 1; count = (count + 1) / 2) {
+            if ((index ^ 1) < count) {
+                if ((index & 1) == 0) {
+                    TreeHasher.hashNode(function, node, 0, proof, off, node,
+                            0);
+                } else {
+                    TreeHasher.hashNode(function, proof, off, node, 0, node,
+                            0);
+                }
+                off += digestLength;
+            }
+            index >>>= 1;
+        }
+
+        return Arrays.equals(node, root);
+    }
+
+    /**
+     * @return The number of hashes in the proof for the given leaf.
+     */
+    private static int proofLength(int index, int count)
+    {
+        int length = 0;
+        for (; count > 1; count = (count + 1) / 2) {
+            if ((index ^ 1) < count) {
+                ++length;
+            }
+            index >>>= 1;
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,150 @@
+package net.meyfa.jciph.hashing;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+
+/**
+ * A {@link BlockHashFunction} that delegates to a JDK {@link MessageDigest}.
+ *
+ * <p>
+ * On HotSpot, the compression functions of the JDK's SHA-2 implementations
+ * are replaced by intrinsics that use the processor's SHA instructions (such
+ * as the x86 SHA extensions or the ARMv8 cryptography extensions) where
+ * available, which is considerably faster than any Java code. This class makes
+ * them available through jciph's API.
+ *
+ * <p>
+ * All data is passed on to the message digest as it arrives, without going
+ * through this class's block buffer. Saving the hash state is not supported,
+ * so these functions cannot be used with {@link Hmac} or
+ * {@link BlockHashFunction#saveState()}. Like the message digest, instances
+ * of this class are not thread-safe.
+ */
+public class MessageDigestFunction extends BlockHashFunction
+{
+    private final MessageDigest messageDigest;
+
+    /**
+     * @param messageDigest The message digest to delegate to. It must not be
+     *            used elsewhere while this object is in use.
+     * @param blockSize The block size, in bytes, of the message digest's
+     *            algorithm.
+     */
+    public MessageDigestFunction(MessageDigest messageDigest, int blockSize)
+    {
+        super(blockSize, messageDigest.getDigestLength() > 0
+                ? messageDigest.getDigestLength() : -1);
+        this.messageDigest = messageDigest;
+    }
+
+    /**
+     * Creates a function delegating to the JDK's SHA-256 implementation.
+     *
+     * @return The new function.
+     * @throws IllegalStateException If the JDK provides no SHA-256.
+     */
+    public static MessageDigestFunction sha256()
+    {
+        return create("SHA-256", Sha256Engine.BLOCK_BYTES);
+    }
+
+    /**
+     * Creates a function delegating to the JDK's SHA-512 implementation.
+     *
+     * @return The new function.
+     * @throws IllegalStateException If the JDK provides no SHA-512.
+     */
+    public static MessageDigestFunction sha512()
+    {
+        return create("SHA-512", Sha512Engine.BLOCK_BYTES);
+    }
+
+    private static MessageDigestFunction create(String algorithm,
+            int blockSize)
+    {
+        try {
+            return new MessageDigestFunction(
+                    MessageDigest.getInstance(algorithm), blockSize);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void reset()
+    {
+        super.reset();
+        messageDigest.reset();
+    }
+
+    @Override
+    public void digest(byte[] partialMessage, int off, int len)
+    {
+        if (off < 0 || len < 0 || len > partialMessage.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (getMetricsListener() != null) {
+            recordDigest(len);
+        }
+
+        messageDigest.update(partialMessage, off, len);
+    }
+
+    @Override
+    public void digest(ByteBuffer partialMessage)
+    {
+        if (getMetricsListener() != null) {
+            recordDigest(partialMessage.remaining());
+        }
+
+        messageDigest.update(partialMessage);
+    }
+
+    @Override
+    public byte[] finish()
+    {
+        byte[] result = messageDigest.digest();
+        if (getMetricsListener() != null) {
+            recordFinish();
+        }
+
+        return result;
+    }
+
+    @Override
+    public int finishInto(byte[] out, int outOff)
+    {
+        int length = messageDigest.getDigestLength();
+        if (outOff < 0 || length > out.length - outOff) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        try {
+            messageDigest.digest(out, outOff, length);
+        } catch (DigestException e) {
+            // cannot happen, the bounds have been checked
+            throw new IllegalStateException(e);
+        }
+        if (getMetricsListener() != null) {
+            recordFinish();
+        }
+
+        return length;
+    }
+
+    @Override
+    protected void processBlock(byte[] block)
+    {
+        messageDigest.update(block);
+    }
+
+    @Override
+    protected byte[] finish(byte[] remainder, int length)
+    {
+        messageDigest.update(remainder, 0, length);
+        return messageDigest.digest();
+    }
+}
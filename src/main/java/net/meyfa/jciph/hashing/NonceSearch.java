@@ -0,0 +1,285 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Searches for proof-of-work nonces in the style of hashcash: given a message
+ * template with a nonce field, it finds a nonce for which the SHA-256 hash of
+ * the message starts with a given number of zero bits.
+ *
+ * <p>
+ * The blocks preceding the one that contains the nonce are the same for
+ * every candidate, so they are compressed only once, into a midstate. The
+ * remaining blocks, including the padding, are kept as words; every
+ * candidate only patches the nonce into them and compresses them in full,
+ * without any buffering or allocation; even the first word of the hash
+ * depends on all rounds of the last compression. The work per candidate is
+ * therefore that of the blocks from the nonce's block on, so place the nonce
+ * near the end of the template.
+ *
+ * <p>
+ * Nonces are written into their field as unsigned big-endian integers. Ranges
+ * of candidates are scanned in parallel on a {@link ForkJoinPool}.
+ *
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class NonceSearch
+{
+    private static final int BLOCK_BYTES = Sha256Engine.BLOCK_BYTES;
+    private static final int BLOCK_WORDS = BLOCK_BYTES / Integer.BYTES;
+    private static final int DIGEST_BITS = 256;
+
+    /**
+     * The number of candidates scanned by one task. Tasks whose range starts
+     * after a nonce found elsewhere are skipped.
+     */
+    private static final int GRAIN = 1 << 14;
+
+    private final byte[] template;
+    private final int noncePosition;
+    private final int nonceLength;
+    private final int difficulty;
+
+    private final int[] midstate;
+    private final int[] tailWords;
+
+    // for every byte of the nonce, the word it goes into and its shift there
+    private final int[] nonceWords;
+    private final int[] nonceShifts;
+
+    /**
+     * Prepares a search.
+     *
+     * @param template The message. The contents of the nonce field are
+     *            ignored.
+     * @param noncePosition The index of the nonce field in the message.
+     * @param nonceLength The length of the nonce field, from 1 to 8 bytes.
+     * @param difficulty The number of leading zero bits the hash must have,
+     *            from 0 to 256.
+     * @throws IllegalArgumentException If the nonce length or the difficulty
+     *             is invalid.
+     * @throws IndexOutOfBoundsException If the nonce field exceeds the
+     *             message.
+     */
+    public NonceSearch(byte[] template, int noncePosition, int nonceLength,
+            int difficulty)
+    {
+        if (nonceLength < 1 || nonceLength > Long.BYTES) {
+            throw new IllegalArgumentException(
+                    "nonce length must be from 1 to 8 bytes");
+        }
+        if (difficulty < 0 || difficulty > DIGEST_BITS) {
+            throw new IllegalArgumentException(
+                    "difficulty must be from 0 to 256 bits");
+        }
+        if (noncePosition < 0
+                || nonceLength > template.length - noncePosition) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        this.template = template.clone();
+        this.noncePosition = noncePosition;
+        this.nonceLength = nonceLength;
+        this.difficulty = difficulty;
+
+        // the blocks before the nonce's block form the midstate
+        int tailStart = noncePosition / BLOCK_BYTES * BLOCK_BYTES;
+        this.midstate = Sha256Engine.H0.clone();
+        for (int off = 0; off < tailStart; off += BLOCK_BYTES) {
+            Sha256Engine.compress(midstate, template, off);
+        }
+
+        // the remaining blocks, padded, with the nonce field cleared
+        int paddedLength = (template.length + 1 + Long.BYTES + BLOCK_BYTES - 1)
+                / BLOCK_BYTES * BLOCK_BYTES;
+        byte[] tail = new byte[paddedLength - tailStart];
+        System.arraycopy(template, tailStart, tail, 0,
+                template.length - tailStart);
+        tail[template.length - tailStart] = (byte) 0b10000000;
+        BigEndian.putLong(tail, tail.length - Long.BYTES,
+                (long) template.length * Byte.SIZE);
+        for (int i = 0; i < nonceLength; ++i) {
+            tail[noncePosition - tailStart + i] = 0;
+        }
+
+        this.tailWords = new int[tail.length / Integer.BYTES];
+        for (int i = 0; i < tailWords.length; ++i) {
+            tailWords[i] = BigEndian.getInt(tail, i * Integer.BYTES);
+        }
+
+        this.nonceWords = new int[nonceLength];
+        this.nonceShifts = new int[nonceLength];
+        for (int i = 0; i < nonceLength; ++i) {
+            int pos = noncePosition - tailStart + i;
+            nonceWords[i] = pos / Integer.BYTES;
+            nonceShifts[i] = (Integer.BYTES - 1 - pos % Integer.BYTES)
+                    * Byte.SIZE;
+        }
+    }
+
+    /**
+     * Finds the smallest nonce in the given range whose hash has the required
+     * number of leading zero bits, running on the common pool.
+     *
+     * @param from The first candidate (inclusive).
+     * @param to The end of the range (exclusive).
+     * @return The nonce, or -1 if there is none in the range.
+     * @throws IllegalArgumentException If the range is invalid, or if it
+     *             contains values that do not fit into the nonce field.
+     */
+    public long find(long from, long to)
+    {
+        return find(from, to, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the smallest nonce in the given range whose hash has the required
+     * number of leading zero bits.
+     *
+     * @param from The first candidate (inclusive).
+     * @param to The end of the range (exclusive).
+     * @param pool The pool to scan the range on.
+     * @return The nonce, or -1 if there is none in the range.
+     * @throws IllegalArgumentException If the range is invalid, or if it
+     *             contains values that do not fit into the nonce field.
+     */
+    public long find(long from, long to, ForkJoinPool pool)
+    {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("invalid nonce range");
+        }
+        if (nonceLength < Long.BYTES && to > 1L << (nonceLength * Byte.SIZE)) {
+            throw new IllegalArgumentException(
+                    "nonce range exceeds the nonce field");
+        }
+
+        AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+
+        SearchTask task = new SearchTask(from, to, best);
+        if (to - from <= GRAIN) {
+            // nothing to split up, so stay on the calling thread
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+
+        long nonce = best.get();
+        return nonce != Long.MAX_VALUE ? nonce : -1;
+    }
+
+    /**
+     * Checks whether the hash of the message with the given nonce has the
+     * required number of leading zero bits.
+     *
+     * @param nonce The nonce.
+     * @return Whether the nonce is valid.
+     */
+    public boolean verify(long nonce)
+    {
+        int[] words = tailWords.clone();
+        int[] state = new int[midstate.length];
+
+        return test(nonce, words, state);
+    }
+
+    /**
+     * @param nonce The nonce.
+     * @return The message with the given nonce in its nonce field.
+     */
+    public byte[] getMessage(long nonce)
+    {
+        byte[] message = template.clone();
+        for (int i = nonceLength - 1; i >= 0; --i) {
+            message[noncePosition + i] = (byte) nonce;
+            nonce >>>= Byte.SIZE;
+        }
+
+        return message;
+    }
+
+    /**
+     * Hashes the message with the given nonce and checks the hash.
+     *
+     * @param nonce The nonce.
+     * @param words The tail words, whose nonce field is overwritten.
+     * @param state The array to compute the hash in.
+     * @return Whether the hash has the required leading zero bits.
+     */
+    private boolean test(long nonce, int[] words, int[] state)
+    {
+        for (int i = 0; i < nonceLength; ++i) {
+            int b = (int) (nonce >>> ((nonceLength - 1 - i) * Byte.SIZE))
+                    & 0xff;
+            int w = nonceWords[i];
+            int shift = nonceShifts[i];
+            words[w] = (words[w] & ~(0xff << shift)) | (b << shift);
+        }
+
+        System.arraycopy(midstate, 0, state, 0, midstate.length);
+        for (int off = 0; off < words.length; off += BLOCK_WORDS) {
+            Sha256Engine.compress(state, words[off], words[off + 1],
+                    words[off + 2], words[off + 3], words[off + 4],
+                    words[off + 5], words[off + 6], words[off + 7],
+                    words[off + 8], words[off + 9], words[off + 10],
+                    words[off + 11], words[off + 12], words[off + 13],
+                    words[off + 14], words[off + 15]);
+        }
+
+        int bits = difficulty;
+        for (int i = 0; bits > 0; ++i, bits -= Integer.SIZE) {
+            if (bits < Integer.SIZE) {
+                return state[i] >>> (Integer.SIZE - bits) == 0;
+            }
+            if (state[i] != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private final class SearchTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final AtomicLong best;
+
+        SearchTask(long from, long to, AtomicLong best)
+        {
+            this.from = from;
+            this.to = to;
+            this.best = best;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (from >= best.get()) {
+                return;
+            }
+
+            if (to - from > GRAIN) {
+                long mid = from + (to - from) / 2;
+                invokeAll(new SearchTask(from, mid, best),
+                        new SearchTask(mid, to, best));
+                return;
+            }
+
+            int[] words = tailWords.clone();
+            int[] state = new int[midstate.length];
+
+            for (long nonce = from; nonce < to; ++nonce) {
+                if (test(nonce, words, state)) {
+                    best.accumulateAndGet(nonce, Math::min);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * PBKDF2 (RFC 8018) with HMAC-SHA256 or HMAC-SHA512 as the pseudorandom
+ * function.
+ *
+ * <p>
+ * Almost all of the work is in the iterations, each of which computes the
+ * HMAC of the previous iteration's output. The password's HMAC key states are
+ * computed once (see {@link HmacKey}), and since the iterated input always
+ * has the length of one digest, both the inner and the outer hash of an
+ * iteration consist of exactly one block with constant padding words. So
+ * every iteration is two calls to the compression function on words held in
+ * local variables, without buffering, padding or allocations.
+ *
+ * <p>
+ * The output consists of blocks of the digest length, which are independent
+ * of each other and are derived in parallel. Note that a key no longer than
+ * one digest consists of a single block, which cannot be split up.
+ */
+public final class Pbkdf2
+{
+    private static final int SHA256_BYTES = 256 / Byte.SIZE;
+    private static final int SHA512_BYTES = 512 / Byte.SIZE;
+
+    // the length, in bits, of a padded key block followed by one digest
+    private static final int SHA256_ITERATION_BITS = (Sha256Engine.BLOCK_BYTES
+            + SHA256_BYTES) * Byte.SIZE;
+    private static final long SHA512_ITERATION_BITS = (Sha512Engine.BLOCK_BYTES
+            + SHA512_BYTES) * Byte.SIZE;
+
+    private Pbkdf2()
+    {
+    }
+
+    /**
+     * Derives a key using PBKDF2-HMAC-SHA256, running on the common pool.
+     *
+     * @param password The password.
+     * @param salt The salt.
+     * @param iterations The iteration count.
+     * @param keyLength The length, in bytes, of the key to derive.
+     * @return The derived key.
+     * @throws IllegalArgumentException If the iteration count or key length
+     *             is not positive.
+     */
+    public static byte[] hmacSha256(byte[] password, byte[] salt,
+            int iterations, int keyLength)
+    {
+        return hmacSha256(password, salt, iterations, keyLength,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Derives a key using PBKDF2-HMAC-SHA256.
+     *
+     * @param password The password.
+     * @param salt The salt.
+     * @param iterations The iteration count.
+     * @param keyLength The length, in bytes, of the key to derive.
+     * @param pool The pool to derive the blocks on.
+     * @return The derived key.
+     * @throws IllegalArgumentException If the iteration count or key length
+     *             is not positive.
+     */
+    public static byte[] hmacSha256(byte[] password, byte[] salt,
+            int iterations, int keyLength, ForkJoinPool pool)
+    {
+        HmacKey key = new HmacKey(new Sha256(), password);
+
+        return derive(iterations, keyLength, SHA256_BYTES, pool,
+                (index, out) -> blockSha256(key, salt, iterations, index, out));
+    }
+
+    /**
+     * Derives a key using PBKDF2-HMAC-SHA512, running on the common pool.
+     *
+     * @param password The password.
+     * @param salt The salt.
+     * @param iterations The iteration count.
+     * @param keyLength The length, in bytes, of the key to derive.
+     * @return The derived key.
+     * @throws IllegalArgumentException If the iteration count or key length
+     *             is not positive.
+     */
+    public static byte[] hmacSha512(byte[] password, byte[] salt,
+            int iterations, int keyLength)
+    {
+        return hmacSha512(password, salt, iterations, keyLength,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Derives a key using PBKDF2-HMAC-SHA512.
+     *
+     * @param password The password.
+     * @param salt The salt.
+     * @param iterations The iteration count.
+     * @param keyLength The length, in bytes, of the key to derive.
+     * @param pool The pool to derive the blocks on.
+     * @return The derived key.
+     * @throws IllegalArgumentException If the iteration count or key length
+     *             is not positive.
+     */
+    public static byte[] hmacSha512(byte[] password, byte[] salt,
+            int iterations, int keyLength, ForkJoinPool pool)
+    {
+        HmacKey key = new HmacKey(new Sha512(), password);
+
+        return derive(iterations, keyLength, SHA512_BYTES, pool,
+                (index, out) -> blockSha512(key, salt, iterations, index, out));
+    }
+
+    private static byte[] derive(int iterations, int keyLength,
+            int digestLength, ForkJoinPool pool, BlockDeriver deriver)
+    {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("iterations must be positive");
+        }
+        if (keyLength <= 0) {
+            throw new IllegalArgumentException("key length must be positive");
+        }
+
+        byte[] result = new byte[keyLength];
+        int blocks = (keyLength + digestLength - 1) / digestLength;
+
+        RangeTask task = new RangeTask(1, blocks + 1, 1, (from, to) -> {
+            for (int index = from; index < to; ++index) {
+                deriveInto(deriver, index, result, digestLength);
+            }
+        });
+        if (blocks == 1) {
+            // nothing to split up, so stay on the calling thread
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+
+        return result;
+    }
+
+    /**
+     * Derives the block with the given (1-based) index into its place in the
+     * result, where the last block may be truncated.
+     */
+    private static void deriveInto(BlockDeriver deriver, int index,
+            byte[] result, int digestLength)
+    {
+        byte[] block = new byte[digestLength];
+        deriver.derive(index, block);
+
+        int off = (index - 1) * digestLength;
+        System.arraycopy(block, 0, result, off,
+                Math.min(digestLength, result.length - off));
+    }
+
+    /**
+     * Computes {@code U_1 = HMAC(P, S || INT(i))}.
+     */
+    private static void firstIteration(BlockHashFunction function,
+            HmacKey key, byte[] salt, int index, byte[] out)
+    {
+        byte[] counter = new byte[Integer.BYTES];
+        BigEndian.putInt(counter, 0, index);
+
+        Hmac hmac = new Hmac(function, key);
+        hmac.digest(salt);
+        hmac.digest(counter);
+        hmac.finishInto(out, 0);
+    }
+
+    private static void blockSha256(HmacKey key, byte[] salt, int iterations,
+            int index, byte[] out)
+    {
+        byte[] u = new byte[SHA256_BYTES];
+        firstIteration(new Sha256(), key, salt, index, u);
+
+        int[] inner = new int[8];
+        int[] outer = new int[8];
+        for (int i = 0; i < 8; ++i) {
+            inner[i] = BigEndian.getInt(key.getInnerState(), i * 4);
+            outer[i] = BigEndian.getInt(key.getOuterState(), i * 4);
+        }
+
+        int u0 = BigEndian.getInt(u, 0), u1 = BigEndian.getInt(u, 4),
+                u2 = BigEndian.getInt(u, 8), u3 = BigEndian.getInt(u, 12),
+                u4 = BigEndian.getInt(u, 16), u5 = BigEndian.getInt(u, 20),
+                u6 = BigEndian.getInt(u, 24), u7 = BigEndian.getInt(u, 28);
+        int t0 = u0, t1 = u1, t2 = u2, t3 = u3, t4 = u4, t5 = u5, t6 = u6,
+                t7 = u7;
+
+        int[] state = new int[8];
+        for (int j = 1; j < iterations; ++j) {
+            // inner hash: key state, then U and the padding in one block
+            System.arraycopy(inner, 0, state, 0, 8);
+            Sha256Engine.compress(state, u0, u1, u2, u3, u4, u5, u6, u7,
+                    0x80000000, 0, 0, 0, 0, 0, 0, SHA256_ITERATION_BITS);
+
+            // outer hash: key state, then the inner hash and the padding
+            int h0 = state[0], h1 = state[1], h2 = state[2], h3 = state[3],
+                    h4 = state[4], h5 = state[5], h6 = state[6],
+                    h7 = state[7];
+            System.arraycopy(outer, 0, state, 0, 8);
+            Sha256Engine.compress(state, h0, h1, h2, h3, h4, h5, h6, h7,
+                    0x80000000, 0, 0, 0, 0, 0, 0, SHA256_ITERATION_BITS);
+
+            u0 = state[0];
+            u1 = state[1];
+            u2 = state[2];
+            u3 = state[3];
+            u4 = state[4];
+            u5 = state[5];
+            u6 = state[6];
+            u7 = state[7];
+
+            t0 ^= u0;
+            t1 ^= u1;
+            t2 ^= u2;
+            t3 ^= u3;
+            t4 ^= u4;
+            t5 ^= u5;
+            t6 ^= u6;
+            t7 ^= u7;
+        }
+
+        BigEndian.putInt(out, 0, t0);
+        BigEndian.putInt(out, 4, t1);
+        BigEndian.putInt(out, 8, t2);
+        BigEndian.putInt(out, 12, t3);
+        BigEndian.putInt(out, 16, t4);
+        BigEndian.putInt(out, 20, t5);
+        BigEndian.putInt(out, 24, t6);
+        BigEndian.putInt(out, 28, t7);
+    }
+
+    private static void blockSha512(HmacKey key, byte[] salt, int iterations,
+            int index, byte[] out)
+    {
+        byte[] u = new byte[SHA512_BYTES];
+        firstIteration(new Sha512(), key, salt, index, u);
+
+        long[] inner = new long[8];
+        long[] outer = new long[8];
+        for (int i = 0; i < 8; ++i) {
+            inner[i] = BigEndian.getLong(key.getInnerState(), i * 8);
+            outer[i] = BigEndian.getLong(key.getOuterState(), i * 8);
+        }
+
+        long u0 = BigEndian.getLong(u, 0), u1 = BigEndian.getLong(u, 8),
+                u2 = BigEndian.getLong(u, 16), u3 = BigEndian.getLong(u, 24),
+                u4 = BigEndian.getLong(u, 32), u5 = BigEndian.getLong(u, 40),
+                u6 = BigEndian.getLong(u, 48), u7 = BigEndian.getLong(u, 56);
+        long t0 = u0, t1 = u1, t2 = u2, t3 = u3, t4 = u4, t5 = u5, t6 = u6,
+                t7 = u7;
+
+        long[] state = new long[8];
+        for (int j = 1; j < iterations; ++j) {
+            // inner hash: key state, then U and the padding in one block
+            System.arraycopy(inner, 0, state, 0, 8);
+            Sha512Engine.compress(state, u0, u1, u2, u3, u4, u5, u6, u7,
+                    0x8000000000000000L, 0, 0, 0, 0, 0, 0,
+                    SHA512_ITERATION_BITS);
+
+            // outer hash: key state, then the inner hash and the padding
+            long h0 = state[0], h1 = state[1], h2 = state[2], h3 = state[3],
+                    h4 = state[4], h5 = state[5], h6 = state[6],
+                    h7 = state[7];
+            System.arraycopy(outer, 0, state, 0, 8);
+            Sha512Engine.compress(state, h0, h1, h2, h3, h4, h5, h6, h7,
+                    0x8000000000000000L, 0, 0, 0, 0, 0, 0,
+                    SHA512_ITERATION_BITS);
+
+            u0 = state[0];
+            u1 = state[1];
+            u2 = state[2];
+            u3 = state[3];
+            u4 = state[4];
+            u5 = state[5];
+            u6 = state[6];
+            u7 = state[7];
+
+            t0 ^= u0;
+            t1 ^= u1;
+            t2 ^= u2;
+            t3 ^= u3;
+            t4 ^= u4;
+            t5 ^= u5;
+            t6 ^= u6;
+            t7 ^= u7;
+        }
+
+        BigEndian.putLong(out, 0, t0);
+        BigEndian.putLong(out, 8, t1);
+        BigEndian.putLong(out, 16, t2);
+        BigEndian.putLong(out, 24, t3);
+        BigEndian.putLong(out, 32, t4);
+        BigEndian.putLong(out, 40, t5);
+        BigEndian.putLong(out, 48, t6);
+        BigEndian.putLong(out, 56, t7);
+    }
+
+    private interface BlockDeriver
+    {
+        /**
+         * Derives the block with the given (1-based) index into the array.
+         */
+        void derive(int index, byte[] out);
+    }
+}
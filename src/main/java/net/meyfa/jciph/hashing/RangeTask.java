@@ -0,0 +1,97 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+
+/**
+ * A fork-join task over a range of indices. The range is split in halves
+ * until no part holds more than a given number of indices (the grain), and
+ * each part is passed to a callback.
+ *
+ * <p>
+ * Tasks created through
+ * {@link #hashEach(int, int, int, Supplier, IndexHasher)} obtain one hash
+ * function instance per part from a factory, rather than keeping instances
+ * per thread, so that nothing outlives the task in the pool's threads.
+ */
+final class RangeTask extends RecursiveAction
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Processes a part of the range.
+     */
+    interface Chunk
+    {
+        /**
+         * @param from The first index of the part (inclusive).
+         * @param to The end of the part (exclusive).
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * Computes a hash for a single index.
+     */
+    interface IndexHasher
+    {
+        /**
+         * @param function The hash function to use.
+         * @param index The index.
+         */
+        void hash(BlockHashFunction function, int index);
+    }
+
+    private final int from, to, grain;
+    private final Chunk chunk;
+
+    /**
+     * @param from The first index (inclusive).
+     * @param to The end of the range (exclusive).
+     * @param grain The maximum number of indices in one part.
+     * @param chunk The callback that processes each part.
+     */
+    RangeTask(int from, int to, int grain, Chunk chunk)
+    {
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+        this.chunk = chunk;
+    }
+
+    /**
+     * Creates a task that hashes every index in the range, with one hash
+     * function instance per part.
+     *
+     * @param from The first index (inclusive).
+     * @param to The end of the range (exclusive).
+     * @param grain The maximum number of indices in one part.
+     * @param factory The factory for the hash function instances.
+     * @param hasher The callback that hashes each index.
+     * @return The task.
+     */
+    static RangeTask hashEach(int from, int to, int grain,
+            Supplier<? extends BlockHashFunction> factory, IndexHasher hasher)
+    {
+        return new RangeTask(from, to, grain, (partFrom, partTo) -> {
+            BlockHashFunction function = factory.get();
+            for (int i = partFrom; i < partTo; ++i) {
+                hasher.hash(function, i);
+            }
+        });
+    }
+
+    @Override
+    protected void compute()
+    {
+        if (to - from > grain) {
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, grain, chunk),
+                    new RangeTask(mid, to, grain, chunk));
+            return;
+        }
+
+        chunk.run(from, to);
+    }
+}
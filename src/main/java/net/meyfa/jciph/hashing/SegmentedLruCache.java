@@ -0,0 +1,162 @@
+package net.meyfa.jciph.hashing;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+
+/**
+ * A bounded cache of values computed from byte array keys, such as prepared
+ * HMAC keys or shared message prefixes.
+ *
+ * <p>
+ * The cache is split into segments, selected by the key's hash code, and
+ * each segment evicts its least recently used entry when it is full. The
+ * capacity is divided among the segments, so the cache never holds more
+ * entries than its capacity, but may evict an entry before it is full if the
+ * keys are unevenly spread. Lookups under different keys rarely contend.
+ * Values are computed outside of any lock.
+ *
+ * <p>
+ * Instances of this class are thread-safe.
+ *
+ * @param <V> The type of the cached values.
+ */
+final class SegmentedLruCache<V>
+{
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<V>[] segments;
+    private final int mask;
+
+    /**
+     * @param capacity The maximum number of entries to keep.
+     * @throws IllegalArgumentException If the capacity is not positive.
+     */
+    SegmentedLruCache(int capacity)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        int count = Integer.highestOneBit(Math.min(capacity, MAX_SEGMENTS));
+
+        @SuppressWarnings("unchecked")
+        Segment<V>[] segments = (Segment<V>[]) new Segment<?>[count];
+        // the first (capacity % count) segments take one more entry, so that
+        // the segment capacities add up to exactly the total
+        for (int i = 0; i < count; ++i) {
+            int extra = i < capacity % count ? 1 : 0;
+            segments[i] = new Segment<>(capacity / count + extra);
+        }
+
+        this.segments = segments;
+        this.mask = count - 1;
+    }
+
+    /**
+     * Returns the value cached for the given key, computing and caching it
+     * if there is none. The key is copied when it is stored, so the caller
+     * may modify it afterwards.
+     *
+     * @param key The key.
+     * @param loader The function computing the value from the key.
+     * @return The cached or computed value.
+     */
+    V get(byte[] key, Function<byte[], V> loader)
+    {
+        CacheKey lookup = new CacheKey(key);
+        Segment<V> segment = segments[lookup.hash & mask];
+
+        V value;
+        synchronized (segment) {
+            value = segment.get(lookup);
+        }
+        if (value != null) {
+            return value;
+        }
+
+        value = loader.apply(key);
+
+        CacheKey stored = new CacheKey(key.clone());
+        synchronized (segment) {
+            // another thread may have been faster
+            V existing = segment.putIfAbsent(stored, value);
+            return existing != null ? existing : value;
+        }
+    }
+
+    /**
+     * @return The number of cached entries.
+     */
+    int size()
+    {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Removes all cached entries.
+     */
+    void clear()
+    {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private static final class CacheKey
+    {
+        private final byte[] bytes;
+        private final int hash;
+
+        CacheKey(byte[] bytes)
+        {
+            int h = Arrays.hashCode(bytes);
+
+            this.bytes = bytes;
+            this.hash = h ^ (h >>> 16);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            return obj instanceof CacheKey
+                    && Arrays.equals(bytes, ((CacheKey) obj).bytes);
+        }
+    }
+
+    private static final class Segment<V> extends LinkedHashMap<CacheKey, V>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, V> eldest)
+        {
+            return size() > capacity;
+        }
+    }
+}
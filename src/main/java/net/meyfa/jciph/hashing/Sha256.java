@@ -1,6 +1,7 @@
 package net.meyfa.jciph.hashing;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 
 /**
@@ -8,36 +9,314 @@ import java.nio.ByteBuffer;
  */
 public class Sha256 extends BlockHashFunction
 {
-    private static final int BLOCK_BYTES = 512 / Byte.SIZE;
-
-    private static final int[] K = { 0x428a2f98, 0x71374491, 0xb5c0fbcf,
-            0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
-            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74,
-            0x80deb1fe, 0x9bdc06a7, 0xc19bf174, 0xe49b69c1, 0xefbe4786,
-            0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc,
-            0x76f988da, 0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7,
-            0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967, 0x27b70a85,
-            0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb,
-            0x81c2c92e, 0x92722c85, 0xa2bfe8a1, 0xa81a664b, 0xc24b8b70,
-            0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
-            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3,
-            0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3, 0x748f82ee, 0x78a5636f,
-            0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7,
-            0xc67178f2 };
-
-    private static final int[] H0 = { 0x6a09e667, 0xbb67ae85, 0x3c6ef372,
-            0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19 };
-
-    // working arrays
-    private final int[] W = new int[64];
-    private final int[] H = new int[8];
-    private final int[] TEMP = new int[8];
+    private static final int BLOCK_BYTES = Sha256Engine.BLOCK_BYTES;
+    private static final int DIGEST_BYTES = 256 / Byte.SIZE;
+
+    private static final int[] H0 = Sha256Engine.H0;
+
+    /**
+     * The schedule of the block following a 64-byte message, which consists
+     * of nothing but padding: a 1-bit, 0-bits and the length of 512 bits.
+     */
+    private static final int[] PADDING_AFTER_64 = Sha256Engine
+            .precomputeSchedule(0x80000000, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                    0, 0, 0, 512);
+
+    private final int[] H = H0.clone();
 
     private long totalLengthBytes = 0;
 
     public Sha256()
     {
-        super(BLOCK_BYTES);
+        super(BLOCK_BYTES, DIGEST_BYTES);
+    }
+
+    /**
+     * Computes the SHA-256 hashes of many independent messages at once. This
+     * is faster than hashing them one by one, since the compression of
+     * several messages is interleaved, which lets the processor execute
+     * their rounds in parallel.
+     *
+     * @param messages The messages to hash.
+     * @return The hashes, in the same order as the messages.
+     */
+    public static byte[][] hashAll(byte[][] messages)
+    {
+        return Sha256MultiBuffer.hashAll(messages);
+    }
+
+    /**
+     * Computes the double SHA-256 hash of the given message, i.e. the SHA-256
+     * hash of its SHA-256 hash.
+     *
+     * @param message The message to hash.
+     * @return The hash.
+     */
+    public static byte[] sha256d(byte[] message)
+    {
+        byte[] out = new byte[DIGEST_BYTES];
+        sha256d(message, 0, message.length, out, 0);
+
+        return out;
+    }
+
+    /**
+     * Computes the double SHA-256 hash of the given range of the array, i.e.
+     * the SHA-256 hash of its SHA-256 hash, and writes it into the given
+     * output array. The intermediate hash is never converted to bytes.
+     *
+     * @param message The array containing the message.
+     * @param off The index of the message's first byte.
+     * @param len The message length.
+     * @param out The array to write the hash into.
+     * @param outOff The index at which to write the hash.
+     * @throws IndexOutOfBoundsException If a range exceeds its array.
+     */
+    public static void sha256d(byte[] message, int off, int len, byte[] out,
+            int outOff)
+    {
+        checkRange(message, off, len);
+        checkRange(out, outOff, DIGEST_BYTES);
+
+        int[] state = new int[H0.length];
+        hashMessage(message, off, len, state);
+        hashState(state);
+
+        putState(state, out, outOff);
+    }
+
+    /**
+     * Computes the SHA-256 hash of a 32-byte input, such as another hash.
+     *
+     * @param in The input, which must be 32 bytes long.
+     * @return The hash.
+     * @throws IllegalArgumentException If the input is not 32 bytes long.
+     */
+    public static byte[] hash32(byte[] in)
+    {
+        if (in.length != DIGEST_BYTES) {
+            throw new IllegalArgumentException("input must be 32 bytes long");
+        }
+
+        byte[] out = new byte[DIGEST_BYTES];
+        hash32(in, 0, out, 0);
+
+        return out;
+    }
+
+    /**
+     * Computes the SHA-256 hash of the 32 bytes starting at the given index
+     * and writes it into the given output array. The input and output ranges
+     * may overlap.
+     *
+     * <p>
+     * The input fits into a single block, whose padding words are constants;
+     * so this is a single compression, without any buffering.
+     *
+     * @param in The array containing the input.
+     * @param inOff The index of the input's first byte.
+     * @param out The array to write the hash into.
+     * @param outOff The index at which to write the hash.
+     * @throws IndexOutOfBoundsException If a range exceeds its array.
+     */
+    public static void hash32(byte[] in, int inOff, byte[] out, int outOff)
+    {
+        checkRange(in, inOff, DIGEST_BYTES);
+        checkRange(out, outOff, DIGEST_BYTES);
+
+        int[] state = H0.clone();
+        Sha256Engine.compress(state,
+                BigEndian.getInt(in, inOff),
+                BigEndian.getInt(in, inOff + 4),
+                BigEndian.getInt(in, inOff + 8),
+                BigEndian.getInt(in, inOff + 12),
+                BigEndian.getInt(in, inOff + 16),
+                BigEndian.getInt(in, inOff + 20),
+                BigEndian.getInt(in, inOff + 24),
+                BigEndian.getInt(in, inOff + 28),
+                0x80000000, 0, 0, 0, 0, 0, 0, DIGEST_BYTES * Byte.SIZE);
+
+        putState(state, out, outOff);
+    }
+
+    /**
+     * Computes the SHA-256 hash of a 64-byte input, such as the two child
+     * hashes of a Merkle tree node.
+     *
+     * @param in The input, which must be 64 bytes long.
+     * @return The hash.
+     * @throws IllegalArgumentException If the input is not 64 bytes long.
+     */
+    public static byte[] hash64(byte[] in)
+    {
+        if (in.length != BLOCK_BYTES) {
+            throw new IllegalArgumentException("input must be 64 bytes long");
+        }
+
+        byte[] out = new byte[DIGEST_BYTES];
+        hash64(in, 0, out, 0);
+
+        return out;
+    }
+
+    /**
+     * Computes the SHA-256 hash of the 64 bytes starting at the given index
+     * and writes it into the given output array. The input and output ranges
+     * may overlap.
+     *
+     * <p>
+     * The input fills exactly one block, and is followed by a block of
+     * constant padding, whose message schedule is precomputed.
+     *
+     * @param in The array containing the input.
+     * @param inOff The index of the input's first byte.
+     * @param out The array to write the hash into.
+     * @param outOff The index at which to write the hash.
+     * @throws IndexOutOfBoundsException If a range exceeds its array.
+     */
+    public static void hash64(byte[] in, int inOff, byte[] out, int outOff)
+    {
+        checkRange(in, inOff, BLOCK_BYTES);
+        checkRange(out, outOff, DIGEST_BYTES);
+
+        int[] state = H0.clone();
+        Sha256Engine.compress(state, in, inOff);
+        Sha256Engine.compress(state, PADDING_AFTER_64);
+
+        putState(state, out, outOff);
+    }
+
+    /**
+     * Hashes the given seed repeatedly, as for a hash chain: the seed is
+     * hashed, then its hash, and so on. Every step after the first hashes 32
+     * bytes, which is done directly on the previous hash's words.
+     *
+     * @param seed The seed.
+     * @param n The number of times to hash.
+     * @return The result of the last step, or a copy of the seed if n is 0.
+     * @throws IllegalArgumentException If n is negative.
+     */
+    public static byte[] iterate(byte[] seed, int n)
+    {
+        if (n < 0) {
+            throw new IllegalArgumentException("negative iteration count");
+        }
+        if (n == 0) {
+            return seed.clone();
+        }
+
+        int[] state = new int[H0.length];
+        hashMessage(seed, 0, seed.length, state);
+        for (int i = 1; i < n; ++i) {
+            hashState(state);
+        }
+
+        byte[] out = new byte[DIGEST_BYTES];
+        putState(state, out, 0);
+
+        return out;
+    }
+
+    /**
+     * Computes the hash of the given message into the given state, without
+     * converting it to bytes.
+     */
+    private static void hashMessage(byte[] message, int off, int len,
+            int[] state)
+    {
+        System.arraycopy(H0, 0, state, 0, H0.length);
+
+        final long bits = (long) len * Byte.SIZE;
+        while (len >= BLOCK_BYTES) {
+            Sha256Engine.compress(state, message, off);
+            off += BLOCK_BYTES;
+            len -= BLOCK_BYTES;
+        }
+
+        // the remainder and the padding take one or two blocks, whose words
+        // are read straight from the message to avoid a scratch buffer
+        int end = len + 1 + 8 > BLOCK_BYTES ? 2 * BLOCK_BYTES : BLOCK_BYTES;
+        for (int i = 0; i < end; i += BLOCK_BYTES) {
+            int w = i / Integer.BYTES;
+            Sha256Engine.compress(state,
+                    paddedWord(message, off, len, bits, end, w),
+                    paddedWord(message, off, len, bits, end, w + 1),
+                    paddedWord(message, off, len, bits, end, w + 2),
+                    paddedWord(message, off, len, bits, end, w + 3),
+                    paddedWord(message, off, len, bits, end, w + 4),
+                    paddedWord(message, off, len, bits, end, w + 5),
+                    paddedWord(message, off, len, bits, end, w + 6),
+                    paddedWord(message, off, len, bits, end, w + 7),
+                    paddedWord(message, off, len, bits, end, w + 8),
+                    paddedWord(message, off, len, bits, end, w + 9),
+                    paddedWord(message, off, len, bits, end, w + 10),
+                    paddedWord(message, off, len, bits, end, w + 11),
+                    paddedWord(message, off, len, bits, end, w + 12),
+                    paddedWord(message, off, len, bits, end, w + 13),
+                    paddedWord(message, off, len, bits, end, w + 14),
+                    paddedWord(message, off, len, bits, end, w + 15));
+        }
+    }
+
+    /**
+     * Returns the word at the given index of the padded remainder, i.e. of
+     * the remainder's len bytes at off, followed by the 1 bit, zeros and the
+     * message length in bits, which end at byte end.
+     */
+    private static int paddedWord(byte[] message, int off, int len, long bits,
+            int end, int index)
+    {
+        int pos = index * Integer.BYTES;
+        if (pos + Integer.BYTES <= len) {
+            return BigEndian.getInt(message, off + pos);
+        }
+        if (pos == end - Long.BYTES) {
+            return (int) (bits >>> 32);
+        }
+        if (pos == end - Integer.BYTES) {
+            return (int) bits;
+        }
+
+        int word = 0;
+        for (int i = pos; i < pos + Integer.BYTES; ++i) {
+            int b = i < len ? message[off + i] & 0xFF : i == len ? 0x80 : 0;
+            word = (word << 8) | b;
+        }
+
+        return word;
+    }
+
+    /**
+     * Replaces the given state, which holds a hash, by the hash of that hash.
+     */
+    private static void hashState(int[] state)
+    {
+        int w0 = state[0];
+        int w1 = state[1];
+        int w2 = state[2];
+        int w3 = state[3];
+        int w4 = state[4];
+        int w5 = state[5];
+        int w6 = state[6];
+        int w7 = state[7];
+
+        System.arraycopy(H0, 0, state, 0, H0.length);
+        Sha256Engine.compress(state, w0, w1, w2, w3, w4, w5, w6, w7,
+                0x80000000, 0, 0, 0, 0, 0, 0, DIGEST_BYTES * Byte.SIZE);
+    }
+
+    private static void putState(int[] state, byte[] out, int outOff)
+    {
+        for (int i = 0; i < state.length; ++i) {
+            BigEndian.putInt(out, outOff + i * Integer.BYTES, state[i]);
+        }
+    }
+
+    private static void checkRange(byte[] b, int off, int len)
+    {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
     }
 
     @Override
@@ -55,78 +334,107 @@ public class Sha256 extends BlockHashFunction
     protected void processBlock(byte[] block)
     {
         processBlock(block, 0);
-        totalLengthBytes += BLOCK_BYTES;
     }
 
     @Override
     protected byte[] finish(byte[] remainder, int length)
     {
-        totalLengthBytes += length;
+        byte[] result = new byte[DIGEST_BYTES];
+        finish(remainder, length, result, 0);
 
-        byte[] padded = pad(remainder, length);
+        return result;
+    }
 
-        int offset = 0;
-        if (padded.length > BLOCK_BYTES) {
-            processBlock(padded);
-            offset = BLOCK_BYTES;
+    @Override
+    protected int finish(byte[] remainder, int length, byte[] out, int outOff)
+    {
+        // message length in bits, as written into the last block
+        final long len = (totalLengthBytes + length) * Byte.SIZE;
+
+        // pad inside the block buffer: 1-bit, 0-bits, 8-byte length
+        remainder[length] = (byte) 0b10000000;
+        if (length + 1 > BLOCK_BYTES - 8) {
+            // no room for the length, so it goes into an extra block
+            Arrays.fill(remainder, length + 1, BLOCK_BYTES, (byte) 0);
+            processBlock(remainder, 0);
+            Arrays.fill(remainder, 0, BLOCK_BYTES - 8, (byte) 0);
+        } else {
+            Arrays.fill(remainder, length + 1, BLOCK_BYTES - 8, (byte) 0);
         }
+        BigEndian.putLong(remainder, BLOCK_BYTES - 8, len);
 
-        processBlock(padded, offset);
+        // the length has been computed already, so it does not matter that
+        // processing the padding blocks counts them, too
+        processBlock(remainder, 0);
 
-        ByteBuffer buf = ByteBuffer.allocate(H.length * Integer.BYTES);
         for (int i = 0; i < H.length; ++i) {
-            buf.putInt(H[i]);
+            BigEndian.putInt(out, outOff + i * Integer.BYTES, H[i]);
         }
 
-        return buf.array();
+        return DIGEST_BYTES;
     }
 
+    @Override
     protected void processBlock(byte[] block, int off)
     {
-        // initialize W[0] - W[15] from the block's words
-        ByteBuffer buf = ByteBuffer.wrap(block, off, BLOCK_BYTES);
-        for (int t = 0; t < 16; ++t) {
-            W[t] = buf.getInt();
-        }
-        // calculate remaining entries in W
-        for (int t = 16; t < W.length; ++t) {
-            W[t] = smallSig1(W[t - 2]) + W[t - 7] + smallSig0(W[t - 15])
-                    + W[t - 16];
-        }
+        Sha256Engine.compress(H, block, off);
+        totalLengthBytes += BLOCK_BYTES;
+    }
+
+    @Override
+    protected void processBlock(ByteBuffer block, int index)
+    {
+        Sha256Engine.compress(H, block, index);
+        totalLengthBytes += BLOCK_BYTES;
+    }
 
-        // let TEMP = H
-        System.arraycopy(H, 0, TEMP, 0, H.length);
+    @Override
+    protected int getChainingStateLength()
+    {
+        // H, then the byte count
+        return DIGEST_BYTES + Long.BYTES;
+    }
 
-        // operate on TEMP
-        for (int t = 0; t < W.length; ++t) {
-            int t1 = TEMP[7] + bigSig1(TEMP[4]) + ch(TEMP[4], TEMP[5], TEMP[6])
-                    + K[t] + W[t];
-            int t2 = bigSig0(TEMP[0]) + maj(TEMP[0], TEMP[1], TEMP[2]);
-            System.arraycopy(TEMP, 0, TEMP, 1, TEMP.length - 1);
-            TEMP[4] += t1;
-            TEMP[0] = t1 + t2;
+    @Override
+    protected void saveChainingState(byte[] out, int off)
+    {
+        for (int i = 0; i < H.length; ++i) {
+            BigEndian.putInt(out, off + i * Integer.BYTES, H[i]);
         }
+        BigEndian.putLong(out, off + DIGEST_BYTES, totalLengthBytes);
+    }
 
-        // add values in TEMP to values in H
-        for (int t = 0; t < H.length; ++t) {
-            H[t] += TEMP[t];
+    @Override
+    protected void restoreChainingState(byte[] in, int off)
+    {
+        for (int i = 0; i < H.length; ++i) {
+            H[i] = BigEndian.getInt(in, off + i * Integer.BYTES);
         }
+        totalLengthBytes = BigEndian.getLong(in, off + DIGEST_BYTES);
     }
 
     /**
-     * Internal method, no need to call. Pads the given message to have a length
-     * that is a multiple of 512 bits (64 bytes), including the addition of a
-     * 1-bit, k 0-bits, and the message length as a 64-bit integer.
+     * Pads the given message to have a length that is a multiple of 512 bits
+     * (64 bytes), including the addition of a 1-bit, k 0-bits, and the
+     * message length as a 64-bit integer. The encoded length is that of the
+     * whole message: the blocks processed so far plus the given remainder.
      *
-     * @param message The array containing the message.
-     * @param length The message length (less than/equal to the array length).
+     * <p>
+     * {@code finish} pads inside the block buffer and no longer calls this
+     * method, so overriding it does not change the computed hashes. It remains
+     * available to subclasses that pad a remainder themselves.
+     *
+     * @param message The array containing the unprocessed remainder.
+     * @param length The remainder length (less than/equal to the array
+     *            length).
      * @return A new array with the padded message bytes.
      */
     protected byte[] pad(byte[] message, int length)
     {
         // new message length: original + 1-bit and padding + 8-byte length
         int newMessageLength = length + 1 + 8;
-        int padBytes = (BLOCK_BYTES - newMessageLength % BLOCK_BYTES) % BLOCK_BYTES;
+        int padBytes = (BLOCK_BYTES - newMessageLength % BLOCK_BYTES)
+                % BLOCK_BYTES;
         newMessageLength += padBytes;
 
         // copy message to extended array
@@ -140,43 +448,9 @@ public class Sha256 extends BlockHashFunction
 
         // write 8-byte integer describing the original message length
         final int lenPos = length + 1 + padBytes;
-        final long len = totalLengthBytes * Byte.SIZE;
+        final long len = (totalLengthBytes + length) * Byte.SIZE;
         ByteBuffer.wrap(paddedMessage, lenPos, 8).putLong(len);
 
         return paddedMessage;
     }
-
-    private static int ch(int x, int y, int z)
-    {
-        return (x & y) | ((~x) & z);
-    }
-
-    private static int maj(int x, int y, int z)
-    {
-        return (x & y) | (x & z) | (y & z);
-    }
-
-    private static int bigSig0(int x)
-    {
-        return Integer.rotateRight(x, 2) ^ Integer.rotateRight(x, 13)
-                ^ Integer.rotateRight(x, 22);
-    }
-
-    private static int bigSig1(int x)
-    {
-        return Integer.rotateRight(x, 6) ^ Integer.rotateRight(x, 11)
-                ^ Integer.rotateRight(x, 25);
-    }
-
-    private static int smallSig0(int x)
-    {
-        return Integer.rotateRight(x, 7) ^ Integer.rotateRight(x, 18)
-                ^ (x >>> 3);
-    }
-
-    private static int smallSig1(int x)
-    {
-        return Integer.rotateRight(x, 17) ^ Integer.rotateRight(x, 19)
-                ^ (x >>> 10);
-    }
 }
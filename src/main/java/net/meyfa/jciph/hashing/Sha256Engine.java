@@ -0,0 +1,362 @@
+package net.meyfa.jciph.hashing;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * The SHA-256 compression function, shared by the classes implementing
+ * SHA-256 based constructions.
+ *
+ * <p>
+ * The working variables a - h and the message schedule are kept in local
+ * variables rather than arrays, so that the JIT compiler can hold them in
+ * registers. The schedule is computed as a rolling window of 16 words, and the
+ * rounds are unrolled 16 at a time. Unrolling all 64 rounds would produce a
+ * method too large for HotSpot to compile.
+ */
+final class Sha256Engine
+{
+    static final int BLOCK_BYTES = 512 / Byte.SIZE;
+
+    static final int[] K = { 0x428a2f98, 0x71374491, 0xb5c0fbcf,
+            0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74,
+            0x80deb1fe, 0x9bdc06a7, 0xc19bf174, 0xe49b69c1, 0xefbe4786,
+            0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc,
+            0x76f988da, 0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7,
+            0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967, 0x27b70a85,
+            0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb,
+            0x81c2c92e, 0x92722c85, 0xa2bfe8a1, 0xa81a664b, 0xc24b8b70,
+            0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3,
+            0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3, 0x748f82ee, 0x78a5636f,
+            0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7,
+            0xc67178f2 };
+
+    static final int[] H0 = { 0x6a09e667, 0xbb67ae85, 0x3c6ef372,
+            0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19 };
+
+    private Sha256Engine()
+    {
+    }
+
+    /**
+     * Processes the block starting at the given offset of the array.
+     *
+     * @param state The 8-word hash state to update.
+     * @param block The array containing the block.
+     * @param off The index at which the block starts.
+     */
+    static void compress(int[] state, byte[] block, int off)
+    {
+        compress(state,
+                BigEndian.getInt(block, off),
+                BigEndian.getInt(block, off + 4),
+                BigEndian.getInt(block, off + 8),
+                BigEndian.getInt(block, off + 12),
+                BigEndian.getInt(block, off + 16),
+                BigEndian.getInt(block, off + 20),
+                BigEndian.getInt(block, off + 24),
+                BigEndian.getInt(block, off + 28),
+                BigEndian.getInt(block, off + 32),
+                BigEndian.getInt(block, off + 36),
+                BigEndian.getInt(block, off + 40),
+                BigEndian.getInt(block, off + 44),
+                BigEndian.getInt(block, off + 48),
+                BigEndian.getInt(block, off + 52),
+                BigEndian.getInt(block, off + 56),
+                BigEndian.getInt(block, off + 60));
+    }
+
+    /**
+     * Processes the block starting at the given index of the buffer, which
+     * must be in big-endian byte order.
+     *
+     * @param state The 8-word hash state to update.
+     * @param block The buffer containing the block.
+     * @param index The index at which the block starts.
+     */
+    static void compress(int[] state, ByteBuffer block, int index)
+    {
+        compress(state,
+                block.getInt(index),
+                block.getInt(index + 4),
+                block.getInt(index + 8),
+                block.getInt(index + 12),
+                block.getInt(index + 16),
+                block.getInt(index + 20),
+                block.getInt(index + 24),
+                block.getInt(index + 28),
+                block.getInt(index + 32),
+                block.getInt(index + 36),
+                block.getInt(index + 40),
+                block.getInt(index + 44),
+                block.getInt(index + 48),
+                block.getInt(index + 52),
+                block.getInt(index + 56),
+                block.getInt(index + 60));
+    }
+
+    /**
+     * Processes the block consisting of the given 16 words.
+     *
+     * @param state The 8-word hash state to update.
+     */
+    static void compress(int[] state, int w0, int w1, int w2,
+            int w3, int w4, int w5, int w6, int w7, int w8, int w9, int w10,
+            int w11, int w12, int w13, int w14, int w15)
+    {
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        int e = state[4];
+        int f = state[5];
+        int g = state[6];
+        int h = state[7];
+
+        // rounds 0 - 15 use the block's words as they are
+        h += bigSig1(e) + ch(e, f, g) + K[0] + w0;
+        d += h;
+        h += bigSig0(a) + maj(a, b, c);
+        g += bigSig1(d) + ch(d, e, f) + K[1] + w1;
+        c += g;
+        g += bigSig0(h) + maj(h, a, b);
+        f += bigSig1(c) + ch(c, d, e) + K[2] + w2;
+        b += f;
+        f += bigSig0(g) + maj(g, h, a);
+        e += bigSig1(b) + ch(b, c, d) + K[3] + w3;
+        a += e;
+        e += bigSig0(f) + maj(f, g, h);
+        d += bigSig1(a) + ch(a, b, c) + K[4] + w4;
+        h += d;
+        d += bigSig0(e) + maj(e, f, g);
+        c += bigSig1(h) + ch(h, a, b) + K[5] + w5;
+        g += c;
+        c += bigSig0(d) + maj(d, e, f);
+        b += bigSig1(g) + ch(g, h, a) + K[6] + w6;
+        f += b;
+        b += bigSig0(c) + maj(c, d, e);
+        a += bigSig1(f) + ch(f, g, h) + K[7] + w7;
+        e += a;
+        a += bigSig0(b) + maj(b, c, d);
+        h += bigSig1(e) + ch(e, f, g) + K[8] + w8;
+        d += h;
+        h += bigSig0(a) + maj(a, b, c);
+        g += bigSig1(d) + ch(d, e, f) + K[9] + w9;
+        c += g;
+        g += bigSig0(h) + maj(h, a, b);
+        f += bigSig1(c) + ch(c, d, e) + K[10] + w10;
+        b += f;
+        f += bigSig0(g) + maj(g, h, a);
+        e += bigSig1(b) + ch(b, c, d) + K[11] + w11;
+        a += e;
+        e += bigSig0(f) + maj(f, g, h);
+        d += bigSig1(a) + ch(a, b, c) + K[12] + w12;
+        h += d;
+        d += bigSig0(e) + maj(e, f, g);
+        c += bigSig1(h) + ch(h, a, b) + K[13] + w13;
+        g += c;
+        c += bigSig0(d) + maj(d, e, f);
+        b += bigSig1(g) + ch(g, h, a) + K[14] + w14;
+        f += b;
+        b += bigSig0(c) + maj(c, d, e);
+        a += bigSig1(f) + ch(f, g, h) + K[15] + w15;
+        e += a;
+        a += bigSig0(b) + maj(b, c, d);
+
+        // rounds 16 - 63 extend the message schedule in place, 16 words
+        // at a time; after 16 rounds, the variables are back in their places
+        for (int j = 16; j < 64; j += 16) {
+            w0 += smallSig1(w14) + w9 + smallSig0(w1);
+            h += bigSig1(e) + ch(e, f, g) + K[j + 0] + w0;
+            d += h;
+            h += bigSig0(a) + maj(a, b, c);
+            w1 += smallSig1(w15) + w10 + smallSig0(w2);
+            g += bigSig1(d) + ch(d, e, f) + K[j + 1] + w1;
+            c += g;
+            g += bigSig0(h) + maj(h, a, b);
+            w2 += smallSig1(w0) + w11 + smallSig0(w3);
+            f += bigSig1(c) + ch(c, d, e) + K[j + 2] + w2;
+            b += f;
+            f += bigSig0(g) + maj(g, h, a);
+            w3 += smallSig1(w1) + w12 + smallSig0(w4);
+            e += bigSig1(b) + ch(b, c, d) + K[j + 3] + w3;
+            a += e;
+            e += bigSig0(f) + maj(f, g, h);
+            w4 += smallSig1(w2) + w13 + smallSig0(w5);
+            d += bigSig1(a) + ch(a, b, c) + K[j + 4] + w4;
+            h += d;
+            d += bigSig0(e) + maj(e, f, g);
+            w5 += smallSig1(w3) + w14 + smallSig0(w6);
+            c += bigSig1(h) + ch(h, a, b) + K[j + 5] + w5;
+            g += c;
+            c += bigSig0(d) + maj(d, e, f);
+            w6 += smallSig1(w4) + w15 + smallSig0(w7);
+            b += bigSig1(g) + ch(g, h, a) + K[j + 6] + w6;
+            f += b;
+            b += bigSig0(c) + maj(c, d, e);
+            w7 += smallSig1(w5) + w0 + smallSig0(w8);
+            a += bigSig1(f) + ch(f, g, h) + K[j + 7] + w7;
+            e += a;
+            a += bigSig0(b) + maj(b, c, d);
+            w8 += smallSig1(w6) + w1 + smallSig0(w9);
+            h += bigSig1(e) + ch(e, f, g) + K[j + 8] + w8;
+            d += h;
+            h += bigSig0(a) + maj(a, b, c);
+            w9 += smallSig1(w7) + w2 + smallSig0(w10);
+            g += bigSig1(d) + ch(d, e, f) + K[j + 9] + w9;
+            c += g;
+            g += bigSig0(h) + maj(h, a, b);
+            w10 += smallSig1(w8) + w3 + smallSig0(w11);
+            f += bigSig1(c) + ch(c, d, e) + K[j + 10] + w10;
+            b += f;
+            f += bigSig0(g) + maj(g, h, a);
+            w11 += smallSig1(w9) + w4 + smallSig0(w12);
+            e += bigSig1(b) + ch(b, c, d) + K[j + 11] + w11;
+            a += e;
+            e += bigSig0(f) + maj(f, g, h);
+            w12 += smallSig1(w10) + w5 + smallSig0(w13);
+            d += bigSig1(a) + ch(a, b, c) + K[j + 12] + w12;
+            h += d;
+            d += bigSig0(e) + maj(e, f, g);
+            w13 += smallSig1(w11) + w6 + smallSig0(w14);
+            c += bigSig1(h) + ch(h, a, b) + K[j + 13] + w13;
+            g += c;
+            c += bigSig0(d) + maj(d, e, f);
+            w14 += smallSig1(w12) + w7 + smallSig0(w15);
+            b += bigSig1(g) + ch(g, h, a) + K[j + 14] + w14;
+            f += b;
+            b += bigSig0(c) + maj(c, d, e);
+            w15 += smallSig1(w13) + w8 + smallSig0(w0);
+            a += bigSig1(f) + ch(f, g, h) + K[j + 15] + w15;
+            e += a;
+            a += bigSig0(b) + maj(b, c, d);
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+
+    /**
+     * Expands the given block into its full message schedule and adds the
+     * round constants, for use with {@link #compress(int[], int[])}. Meant
+     * for blocks that are known in advance, such as constant padding blocks.
+     *
+     * @param block The block's 16 words.
+     * @return The 64 sums of round constant and schedule word.
+     */
+    static int[] precomputeSchedule(int... block)
+    {
+        int[] w = new int[64];
+        System.arraycopy(block, 0, w, 0, 16);
+        for (int i = 16; i < 64; ++i) {
+            w[i] = smallSig1(w[i - 2]) + w[i - 7] + smallSig0(w[i - 15])
+                    + w[i - 16];
+        }
+
+        for (int i = 0; i < 64; ++i) {
+            w[i] += K[i];
+        }
+
+        return w;
+    }
+
+    /**
+     * Processes a block whose schedule has been computed in advance through
+     * {@link #precomputeSchedule(int...)}, so that only the rounds remain.
+     *
+     * @param state The 8-word hash state to update.
+     * @param schedule The block's precomputed schedule.
+     */
+    static void compress(int[] state, int[] schedule)
+    {
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        int e = state[4];
+        int f = state[5];
+        int g = state[6];
+        int h = state[7];
+
+        // after 8 rounds, the variables are back in their places
+        for (int j = 0; j < 64; j += 8) {
+            h += bigSig1(e) + ch(e, f, g) + schedule[j];
+            d += h;
+            h += bigSig0(a) + maj(a, b, c);
+            g += bigSig1(d) + ch(d, e, f) + schedule[j + 1];
+            c += g;
+            g += bigSig0(h) + maj(h, a, b);
+            f += bigSig1(c) + ch(c, d, e) + schedule[j + 2];
+            b += f;
+            f += bigSig0(g) + maj(g, h, a);
+            e += bigSig1(b) + ch(b, c, d) + schedule[j + 3];
+            a += e;
+            e += bigSig0(f) + maj(f, g, h);
+            d += bigSig1(a) + ch(a, b, c) + schedule[j + 4];
+            h += d;
+            d += bigSig0(e) + maj(e, f, g);
+            c += bigSig1(h) + ch(h, a, b) + schedule[j + 5];
+            g += c;
+            c += bigSig0(d) + maj(d, e, f);
+            b += bigSig1(g) + ch(g, h, a) + schedule[j + 6];
+            f += b;
+            b += bigSig0(c) + maj(c, d, e);
+            a += bigSig1(f) + ch(f, g, h) + schedule[j + 7];
+            e += a;
+            a += bigSig0(b) + maj(b, c, d);
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+
+    static int ch(int x, int y, int z)
+    {
+        // same as (x & y) | (~x & z)
+        return z ^ (x & (y ^ z));
+    }
+
+    static int maj(int x, int y, int z)
+    {
+        // same as (x & y) | (x & z) | (y & z)
+        return (x & y) | (z & (x | y));
+    }
+
+    static int bigSig0(int x)
+    {
+        return Integer.rotateRight(x, 2) ^ Integer.rotateRight(x, 13)
+                ^ Integer.rotateRight(x, 22);
+    }
+
+    static int bigSig1(int x)
+    {
+        return Integer.rotateRight(x, 6) ^ Integer.rotateRight(x, 11)
+                ^ Integer.rotateRight(x, 25);
+    }
+
+    static int smallSig0(int x)
+    {
+        return Integer.rotateRight(x, 7) ^ Integer.rotateRight(x, 18)
+                ^ (x >>> 3);
+    }
+
+    static int smallSig1(int x)
+    {
+        return Integer.rotateRight(x, 17) ^ Integer.rotateRight(x, 19)
+                ^ (x >>> 10);
+    }
+}
@@ -0,0 +1,357 @@
+package net.meyfa.jciph.hashing;
+
+import static net.meyfa.jciph.hashing.Sha256Engine.bigSig0;
+import static net.meyfa.jciph.hashing.Sha256Engine.bigSig1;
+import static net.meyfa.jciph.hashing.Sha256Engine.ch;
+import static net.meyfa.jciph.hashing.Sha256Engine.maj;
+import static net.meyfa.jciph.hashing.Sha256Engine.smallSig0;
+import static net.meyfa.jciph.hashing.Sha256Engine.smallSig1;
+
+import java.util.Arrays;
+
+
+/**
+ * Computes SHA-256 hashes of many independent messages at once.
+ *
+ * <p>
+ * The messages are distributed over 4 lanes, and the lanes' blocks are
+ * compressed in one interleaved loop. Since the lanes do not depend on each
+ * other, the processor can execute their rounds in parallel, instead of
+ * waiting on the dependency chain of a single message. The message schedules
+ * of all lanes are computed up front into one array, with the shared round
+ * constants from {@link Sha256Engine#K} already added in.
+ *
+ * <p>
+ * Whenever a lane finishes its message, it picks up the next one. Once there
+ * are no more messages to pick up, the remaining lanes are finished one at a
+ * time, so that no work is wasted on idle lanes.
+ */
+final class Sha256MultiBuffer
+{
+    static final int LANES = 4;
+
+    private static final int BLOCK_BYTES = Sha256Engine.BLOCK_BYTES;
+    private static final int DIGEST_BYTES = 256 / Byte.SIZE;
+
+    private final byte[][] messages;
+    private final byte[][] results;
+    private int nextMessage = 0;
+    private int activeLanes = 0;
+
+    // per-lane progress through the current message
+    private final int[] message = new int[LANES];
+    private final int[] block = new int[LANES];
+    private final int[] fullBlocks = new int[LANES];
+    private final int[] totalBlocks = new int[LANES];
+
+    // per-lane padded message tails and hash states
+    private final byte[][] tails = new byte[LANES][2 * BLOCK_BYTES];
+    private final int[][] states = new int[LANES][8];
+
+    // message schedules plus round constants, indexed by round * LANES + lane
+    private final int[] kw = new int[64 * LANES];
+
+    private Sha256MultiBuffer(byte[][] messages)
+    {
+        this.messages = messages;
+        this.results = new byte[messages.length][];
+    }
+
+    /**
+     * Computes the SHA-256 hashes of the given messages.
+     *
+     * @param messages The messages to hash.
+     * @return The hashes, in the same order as the messages.
+     */
+    static byte[][] hashAll(byte[][] messages)
+    {
+        return new Sha256MultiBuffer(messages).run();
+    }
+
+    private byte[][] run()
+    {
+        for (int lane = 0; lane < LANES; ++lane) {
+            if (assign(lane)) {
+                ++activeLanes;
+            }
+        }
+
+        while (activeLanes == LANES) {
+            compressLanes();
+
+            for (int lane = 0; lane < LANES; ++lane) {
+                if (++block[lane] == totalBlocks[lane]) {
+                    complete(lane);
+                    if (!assign(lane)) {
+                        --activeLanes;
+                    }
+                }
+            }
+        }
+
+        // not enough messages left to fill all lanes
+        for (int lane = 0; lane < LANES; ++lane) {
+            if (message[lane] < 0) {
+                continue;
+            }
+            for (; block[lane] < totalBlocks[lane]; ++block[lane]) {
+                Sha256Engine.compress(states[lane], source(lane),
+                        sourceOffset(lane));
+            }
+            complete(lane);
+        }
+
+        return results;
+    }
+
+    /**
+     * Lets the lane pick up the next message, if there is one.
+     *
+     * @return Whether there was a message left to pick up.
+     */
+    private boolean assign(int lane)
+    {
+        if (nextMessage >= messages.length) {
+            message[lane] = -1;
+            return false;
+        }
+
+        final int index = nextMessage++;
+        final byte[] msg = messages[index];
+        final int full = msg.length / BLOCK_BYTES;
+        final int tailLength = msg.length - full * BLOCK_BYTES;
+
+        // padded tail: remaining bytes, 1-bit, 0-bits, 8-byte length
+        final byte[] tail = tails[lane];
+        final int tailBlocks = tailLength + 1 + 8 > BLOCK_BYTES ? 2 : 1;
+        final int tailEnd = tailBlocks * BLOCK_BYTES;
+        System.arraycopy(msg, full * BLOCK_BYTES, tail, 0, tailLength);
+        tail[tailLength] = (byte) 0b10000000;
+        Arrays.fill(tail, tailLength + 1, tailEnd - 8, (byte) 0);
+        BigEndian.putLong(tail, tailEnd - 8, (long) msg.length * Byte.SIZE);
+
+        message[lane] = index;
+        block[lane] = 0;
+        fullBlocks[lane] = full;
+        totalBlocks[lane] = full + tailBlocks;
+        System.arraycopy(Sha256Engine.H0, 0, states[lane], 0, 8);
+
+        return true;
+    }
+
+    private void complete(int lane)
+    {
+        byte[] result = new byte[DIGEST_BYTES];
+        int[] state = states[lane];
+        for (int i = 0; i < state.length; ++i) {
+            BigEndian.putInt(result, i * Integer.BYTES, state[i]);
+        }
+        results[message[lane]] = result;
+    }
+
+    private byte[] source(int lane)
+    {
+        return block[lane] < fullBlocks[lane] ? messages[message[lane]]
+                : tails[lane];
+    }
+
+    private int sourceOffset(int lane)
+    {
+        int b = block[lane];
+        return (b < fullBlocks[lane] ? b : b - fullBlocks[lane]) * BLOCK_BYTES;
+    }
+
+    /**
+     * Compresses the current block of every lane.
+     */
+    private void compressLanes()
+    {
+        final int[] kw = this.kw;
+
+        for (int lane = 0; lane < LANES; ++lane) {
+            byte[] src = source(lane);
+            int off = sourceOffset(lane);
+            for (int t = 0; t < 16; ++t) {
+                kw[t * LANES + lane] = BigEndian.getInt(src, off + t * 4);
+            }
+        }
+
+        // extend the schedules of all lanes together
+        for (int i = 16 * LANES; i < kw.length; ++i) {
+            kw[i] = smallSig1(kw[i - 2 * LANES]) + kw[i - 7 * LANES]
+                    + smallSig0(kw[i - 15 * LANES]) + kw[i - 16 * LANES];
+        }
+        for (int i = 0; i < kw.length; ++i) {
+            kw[i] += Sha256Engine.K[i / LANES];
+        }
+
+        final int[] s0 = states[0];
+        final int[] s1 = states[1];
+        final int[] s2 = states[2];
+        final int[] s3 = states[3];
+        int a0 = s0[0];
+        int b0 = s0[1];
+        int c0 = s0[2];
+        int d0 = s0[3];
+        int e0 = s0[4];
+        int f0 = s0[5];
+        int g0 = s0[6];
+        int h0 = s0[7];
+        int a1 = s1[0];
+        int b1 = s1[1];
+        int c1 = s1[2];
+        int d1 = s1[3];
+        int e1 = s1[4];
+        int f1 = s1[5];
+        int g1 = s1[6];
+        int h1 = s1[7];
+        int a2 = s2[0];
+        int b2 = s2[1];
+        int c2 = s2[2];
+        int d2 = s2[3];
+        int e2 = s2[4];
+        int f2 = s2[5];
+        int g2 = s2[6];
+        int h2 = s2[7];
+        int a3 = s3[0];
+        int b3 = s3[1];
+        int c3 = s3[2];
+        int d3 = s3[3];
+        int e3 = s3[4];
+        int f3 = s3[5];
+        int g3 = s3[6];
+        int h3 = s3[7];
+
+        for (int k = 0; k < kw.length; k += 8 * LANES) {
+            h0 += bigSig1(e0) + ch(e0, f0, g0) + kw[k];
+            h1 += bigSig1(e1) + ch(e1, f1, g1) + kw[k + 1];
+            h2 += bigSig1(e2) + ch(e2, f2, g2) + kw[k + 2];
+            h3 += bigSig1(e3) + ch(e3, f3, g3) + kw[k + 3];
+            d0 += h0;
+            d1 += h1;
+            d2 += h2;
+            d3 += h3;
+            h0 += bigSig0(a0) + maj(a0, b0, c0);
+            h1 += bigSig0(a1) + maj(a1, b1, c1);
+            h2 += bigSig0(a2) + maj(a2, b2, c2);
+            h3 += bigSig0(a3) + maj(a3, b3, c3);
+            g0 += bigSig1(d0) + ch(d0, e0, f0) + kw[k + 4];
+            g1 += bigSig1(d1) + ch(d1, e1, f1) + kw[k + 5];
+            g2 += bigSig1(d2) + ch(d2, e2, f2) + kw[k + 6];
+            g3 += bigSig1(d3) + ch(d3, e3, f3) + kw[k + 7];
+            c0 += g0;
+            c1 += g1;
+            c2 += g2;
+            c3 += g3;
+            g0 += bigSig0(h0) + maj(h0, a0, b0);
+            g1 += bigSig0(h1) + maj(h1, a1, b1);
+            g2 += bigSig0(h2) + maj(h2, a2, b2);
+            g3 += bigSig0(h3) + maj(h3, a3, b3);
+            f0 += bigSig1(c0) + ch(c0, d0, e0) + kw[k + 8];
+            f1 += bigSig1(c1) + ch(c1, d1, e1) + kw[k + 9];
+            f2 += bigSig1(c2) + ch(c2, d2, e2) + kw[k + 10];
+            f3 += bigSig1(c3) + ch(c3, d3, e3) + kw[k + 11];
+            b0 += f0;
+            b1 += f1;
+            b2 += f2;
+            b3 += f3;
+            f0 += bigSig0(g0) + maj(g0, h0, a0);
+            f1 += bigSig0(g1) + maj(g1, h1, a1);
+            f2 += bigSig0(g2) + maj(g2, h2, a2);
+            f3 += bigSig0(g3) + maj(g3, h3, a3);
+            e0 += bigSig1(b0) + ch(b0, c0, d0) + kw[k + 12];
+            e1 += bigSig1(b1) + ch(b1, c1, d1) + kw[k + 13];
+            e2 += bigSig1(b2) + ch(b2, c2, d2) + kw[k + 14];
+            e3 += bigSig1(b3) + ch(b3, c3, d3) + kw[k + 15];
+            a0 += e0;
+            a1 += e1;
+            a2 += e2;
+            a3 += e3;
+            e0 += bigSig0(f0) + maj(f0, g0, h0);
+            e1 += bigSig0(f1) + maj(f1, g1, h1);
+            e2 += bigSig0(f2) + maj(f2, g2, h2);
+            e3 += bigSig0(f3) + maj(f3, g3, h3);
+            d0 += bigSig1(a0) + ch(a0, b0, c0) + kw[k + 16];
+            d1 += bigSig1(a1) + ch(a1, b1, c1) + kw[k + 17];
+            d2 += bigSig1(a2) + ch(a2, b2, c2) + kw[k + 18];
+            d3 += bigSig1(a3) + ch(a3, b3, c3) + kw[k + 19];
+            h0 += d0;
+            h1 += d1;
+            h2 += d2;
+            h3 += d3;
+            d0 += bigSig0(e0) + maj(e0, f0, g0);
+            d1 += bigSig0(e1) + maj(e1, f1, g1);
+            d2 += bigSig0(e2) + maj(e2, f2, g2);
+            d3 += bigSig0(e3) + maj(e3, f3, g3);
+            c0 += bigSig1(h0) + ch(h0, a0, b0) + kw[k + 20];
+            c1 += bigSig1(h1) + ch(h1, a1, b1) + kw[k + 21];
+            c2 += bigSig1(h2) + ch(h2, a2, b2) + kw[k + 22];
+            c3 += bigSig1(h3) + ch(h3, a3, b3) + kw[k + 23];
+            g0 += c0;
+            g1 += c1;
+            g2 += c2;
+            g3 += c3;
+            c0 += bigSig0(d0) + maj(d0, e0, f0);
+            c1 += bigSig0(d1) + maj(d1, e1, f1);
+            c2 += bigSig0(d2) + maj(d2, e2, f2);
+            c3 += bigSig0(d3) + maj(d3, e3, f3);
+            b0 += bigSig1(g0) + ch(g0, h0, a0) + kw[k + 24];
+            b1 += bigSig1(g1) + ch(g1, h1, a1) + kw[k + 25];
+            b2 += bigSig1(g2) + ch(g2, h2, a2) + kw[k + 26];
+            b3 += bigSig1(g3) + ch(g3, h3, a3) + kw[k + 27];
+            f0 += b0;
+            f1 += b1;
+            f2 += b2;
+            f3 += b3;
+            b0 += bigSig0(c0) + maj(c0, d0, e0);
+            b1 += bigSig0(c1) + maj(c1, d1, e1);
+            b2 += bigSig0(c2) + maj(c2, d2, e2);
+            b3 += bigSig0(c3) + maj(c3, d3, e3);
+            a0 += bigSig1(f0) + ch(f0, g0, h0) + kw[k + 28];
+            a1 += bigSig1(f1) + ch(f1, g1, h1) + kw[k + 29];
+            a2 += bigSig1(f2) + ch(f2, g2, h2) + kw[k + 30];
+            a3 += bigSig1(f3) + ch(f3, g3, h3) + kw[k + 31];
+            e0 += a0;
+            e1 += a1;
+            e2 += a2;
+            e3 += a3;
+            a0 += bigSig0(b0) + maj(b0, c0, d0);
+            a1 += bigSig0(b1) + maj(b1, c1, d1);
+            a2 += bigSig0(b2) + maj(b2, c2, d2);
+            a3 += bigSig0(b3) + maj(b3, c3, d3);
+        }
+
+        s0[0] += a0;
+        s0[1] += b0;
+        s0[2] += c0;
+        s0[3] += d0;
+        s0[4] += e0;
+        s0[5] += f0;
+        s0[6] += g0;
+        s0[7] += h0;
+        s1[0] += a1;
+        s1[1] += b1;
+        s1[2] += c1;
+        s1[3] += d1;
+        s1[4] += e1;
+        s1[5] += f1;
+        s1[6] += g1;
+        s1[7] += h1;
+        s2[0] += a2;
+        s2[1] += b2;
+        s2[2] += c2;
+        s2[3] += d2;
+        s2[4] += e2;
+        s2[5] += f2;
+        s2[6] += g2;
+        s2[7] += h2;
+        s3[0] += a3;
+        s3[1] += b3;
+        s3[2] += c3;
+        s3[3] += d3;
+        s3[4] += e3;
+        s3[5] += f3;
+        s3[6] += g3;
+        s3[7] += h3;
+    }
+}
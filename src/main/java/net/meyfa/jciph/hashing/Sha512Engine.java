@@ -0,0 +1,294 @@
+package net.meyfa.jciph.hashing;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * The SHA-512 compression function, shared by the classes implementing
+ * SHA-512 based constructions.
+ *
+ * <p>
+ * The working variables a - h and the message schedule are kept in local
+ * variables rather than arrays, so that the JIT compiler can hold them in
+ * registers. The schedule is computed as a rolling window of 16 words, and the
+ * rounds are unrolled 16 at a time. Unrolling all 80 rounds would produce a
+ * method too large for HotSpot to compile.
+ */
+final class Sha512Engine
+{
+    static final int BLOCK_BYTES = 1024 / Byte.SIZE;
+
+    static final long[] K = { 0x428a2f98d728ae22L, 0x7137449123ef65cdL,
+            0xb5c0fbcfec4d3b2fL, 0xe9b5dba58189dbbcL, 0x3956c25bf348b538L,
+            0x59f111f1b605d019L, 0x923f82a4af194f9bL, 0xab1c5ed5da6d8118L,
+            0xd807aa98a3030242L, 0x12835b0145706fbeL, 0x243185be4ee4b28cL,
+            0x550c7dc3d5ffb4e2L, 0x72be5d74f27b896fL, 0x80deb1fe3b1696b1L,
+            0x9bdc06a725c71235L, 0xc19bf174cf692694L, 0xe49b69c19ef14ad2L,
+            0xefbe4786384f25e3L, 0x0fc19dc68b8cd5b5L, 0x240ca1cc77ac9c65L,
+            0x2de92c6f592b0275L, 0x4a7484aa6ea6e483L, 0x5cb0a9dcbd41fbd4L,
+            0x76f988da831153b5L, 0x983e5152ee66dfabL, 0xa831c66d2db43210L,
+            0xb00327c898fb213fL, 0xbf597fc7beef0ee4L, 0xc6e00bf33da88fc2L,
+            0xd5a79147930aa725L, 0x06ca6351e003826fL, 0x142929670a0e6e70L,
+            0x27b70a8546d22ffcL, 0x2e1b21385c26c926L, 0x4d2c6dfc5ac42aedL,
+            0x53380d139d95b3dfL, 0x650a73548baf63deL, 0x766a0abb3c77b2a8L,
+            0x81c2c92e47edaee6L, 0x92722c851482353bL, 0xa2bfe8a14cf10364L,
+            0xa81a664bbc423001L, 0xc24b8b70d0f89791L, 0xc76c51a30654be30L,
+            0xd192e819d6ef5218L, 0xd69906245565a910L, 0xf40e35855771202aL,
+            0x106aa07032bbd1b8L, 0x19a4c116b8d2d0c8L, 0x1e376c085141ab53L,
+            0x2748774cdf8eeb99L, 0x34b0bcb5e19b48a8L, 0x391c0cb3c5c95a63L,
+            0x4ed8aa4ae3418acbL, 0x5b9cca4f7763e373L, 0x682e6ff3d6b2b8a3L,
+            0x748f82ee5defb2fcL, 0x78a5636f43172f60L, 0x84c87814a1f0ab72L,
+            0x8cc702081a6439ecL, 0x90befffa23631e28L, 0xa4506cebde82bde9L,
+            0xbef9a3f7b2c67915L, 0xc67178f2e372532bL, 0xca273eceea26619cL,
+            0xd186b8c721c0c207L, 0xeada7dd6cde0eb1eL, 0xf57d4f7fee6ed178L,
+            0x06f067aa72176fbaL, 0x0a637dc5a2c898a6L, 0x113f9804bef90daeL,
+            0x1b710b35131c471bL, 0x28db77f523047d84L, 0x32caab7b40c72493L,
+            0x3c9ebe0a15c9bebcL, 0x431d67c49c100d4cL, 0x4cc5d4becb3e42b6L,
+            0x597f299cfc657e2aL, 0x5fcb6fab3ad6faecL, 0x6c44198c4a475817L };
+
+    static final long[] H0 = { 0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL,
+            0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L, 0x510e527fade682d1L,
+            0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L };
+
+    private Sha512Engine()
+    {
+    }
+
+    /**
+     * Processes the block starting at the given offset of the array.
+     *
+     * @param state The 8-word hash state to update.
+     * @param block The array containing the block.
+     * @param off The index at which the block starts.
+     */
+    static void compress(long[] state, byte[] block, int off)
+    {
+        compress(state,
+                BigEndian.getLong(block, off),
+                BigEndian.getLong(block, off + 8),
+                BigEndian.getLong(block, off + 16),
+                BigEndian.getLong(block, off + 24),
+                BigEndian.getLong(block, off + 32),
+                BigEndian.getLong(block, off + 40),
+                BigEndian.getLong(block, off + 48),
+                BigEndian.getLong(block, off + 56),
+                BigEndian.getLong(block, off + 64),
+                BigEndian.getLong(block, off + 72),
+                BigEndian.getLong(block, off + 80),
+                BigEndian.getLong(block, off + 88),
+                BigEndian.getLong(block, off + 96),
+                BigEndian.getLong(block, off + 104),
+                BigEndian.getLong(block, off + 112),
+                BigEndian.getLong(block, off + 120));
+    }
+
+    /**
+     * Processes the block starting at the given index of the buffer, which
+     * must be in big-endian byte order.
+     *
+     * @param state The 8-word hash state to update.
+     * @param block The buffer containing the block.
+     * @param index The index at which the block starts.
+     */
+    static void compress(long[] state, ByteBuffer block, int index)
+    {
+        compress(state,
+                block.getLong(index),
+                block.getLong(index + 8),
+                block.getLong(index + 16),
+                block.getLong(index + 24),
+                block.getLong(index + 32),
+                block.getLong(index + 40),
+                block.getLong(index + 48),
+                block.getLong(index + 56),
+                block.getLong(index + 64),
+                block.getLong(index + 72),
+                block.getLong(index + 80),
+                block.getLong(index + 88),
+                block.getLong(index + 96),
+                block.getLong(index + 104),
+                block.getLong(index + 112),
+                block.getLong(index + 120));
+    }
+
+    /**
+     * Processes the block consisting of the given 16 words.
+     *
+     * @param state The 8-word hash state to update.
+     */
+    static void compress(long[] state, long w0, long w1, long w2,
+            long w3, long w4, long w5, long w6, long w7, long w8, long w9,
+            long w10, long w11, long w12, long w13, long w14, long w15)
+    {
+        long a = state[0];
+        long b = state[1];
+        long c = state[2];
+        long d = state[3];
+        long e = state[4];
+        long f = state[5];
+        long g = state[6];
+        long h = state[7];
+
+        // rounds 0 - 15 use the block's words as they are
+        h += bigSig1(e) + ch(e, f, g) + K[0] + w0;
+        d += h;
+        h += bigSig0(a) + maj(a, b, c);
+        g += bigSig1(d) + ch(d, e, f) + K[1] + w1;
+        c += g;
+        g += bigSig0(h) + maj(h, a, b);
+        f += bigSig1(c) + ch(c, d, e) + K[2] + w2;
+        b += f;
+        f += bigSig0(g) + maj(g, h, a);
+        e += bigSig1(b) + ch(b, c, d) + K[3] + w3;
+        a += e;
+        e += bigSig0(f) + maj(f, g, h);
+        d += bigSig1(a) + ch(a, b, c) + K[4] + w4;
+        h += d;
+        d += bigSig0(e) + maj(e, f, g);
+        c += bigSig1(h) + ch(h, a, b) + K[5] + w5;
+        g += c;
+        c += bigSig0(d) + maj(d, e, f);
+        b += bigSig1(g) + ch(g, h, a) + K[6] + w6;
+        f += b;
+        b += bigSig0(c) + maj(c, d, e);
+        a += bigSig1(f) + ch(f, g, h) + K[7] + w7;
+        e += a;
+        a += bigSig0(b) + maj(b, c, d);
+        h += bigSig1(e) + ch(e, f, g) + K[8] + w8;
+        d += h;
+        h += bigSig0(a) + maj(a, b, c);
+        g += bigSig1(d) + ch(d, e, f) + K[9] + w9;
+        c += g;
+        g += bigSig0(h) + maj(h, a, b);
+        f += bigSig1(c) + ch(c, d, e) + K[10] + w10;
+        b += f;
+        f += bigSig0(g) + maj(g, h, a);
+        e += bigSig1(b) + ch(b, c, d) + K[11] + w11;
+        a += e;
+        e += bigSig0(f) + maj(f, g, h);
+        d += bigSig1(a) + ch(a, b, c) + K[12] + w12;
+        h += d;
+        d += bigSig0(e) + maj(e, f, g);
+        c += bigSig1(h) + ch(h, a, b) + K[13] + w13;
+        g += c;
+        c += bigSig0(d) + maj(d, e, f);
+        b += bigSig1(g) + ch(g, h, a) + K[14] + w14;
+        f += b;
+        b += bigSig0(c) + maj(c, d, e);
+        a += bigSig1(f) + ch(f, g, h) + K[15] + w15;
+        e += a;
+        a += bigSig0(b) + maj(b, c, d);
+
+        // rounds 16 - 79 extend the message schedule in place, 16 words
+        // at a time; after 16 rounds, the variables are back in their places
+        for (int j = 16; j < 80; j += 16) {
+            w0 += smallSig1(w14) + w9 + smallSig0(w1);
+            h += bigSig1(e) + ch(e, f, g) + K[j + 0] + w0;
+            d += h;
+            h += bigSig0(a) + maj(a, b, c);
+            w1 += smallSig1(w15) + w10 + smallSig0(w2);
+            g += bigSig1(d) + ch(d, e, f) + K[j + 1] + w1;
+            c += g;
+            g += bigSig0(h) + maj(h, a, b);
+            w2 += smallSig1(w0) + w11 + smallSig0(w3);
+            f += bigSig1(c) + ch(c, d, e) + K[j + 2] + w2;
+            b += f;
+            f += bigSig0(g) + maj(g, h, a);
+            w3 += smallSig1(w1) + w12 + smallSig0(w4);
+            e += bigSig1(b) + ch(b, c, d) + K[j + 3] + w3;
+            a += e;
+            e += bigSig0(f) + maj(f, g, h);
+            w4 += smallSig1(w2) + w13 + smallSig0(w5);
+            d += bigSig1(a) + ch(a, b, c) + K[j + 4] + w4;
+            h += d;
+            d += bigSig0(e) + maj(e, f, g);
+            w5 += smallSig1(w3) + w14 + smallSig0(w6);
+            c += bigSig1(h) + ch(h, a, b) + K[j + 5] + w5;
+            g += c;
+            c += bigSig0(d) + maj(d, e, f);
+            w6 += smallSig1(w4) + w15 + smallSig0(w7);
+            b += bigSig1(g) + ch(g, h, a) + K[j + 6] + w6;
+            f += b;
+            b += bigSig0(c) + maj(c, d, e);
+            w7 += smallSig1(w5) + w0 + smallSig0(w8);
+            a += bigSig1(f) + ch(f, g, h) + K[j + 7] + w7;
+            e += a;
+            a += bigSig0(b) + maj(b, c, d);
+            w8 += smallSig1(w6) + w1 + smallSig0(w9);
+            h += bigSig1(e) + ch(e, f, g) + K[j + 8] + w8;
+            d += h;
+            h += bigSig0(a) + maj(a, b, c);
+            w9 += smallSig1(w7) + w2 + smallSig0(w10);
+            g += bigSig1(d) + ch(d, e, f) + K[j + 9] + w9;
+            c += g;
+            g += bigSig0(h) + maj(h, a, b);
+            w10 += smallSig1(w8) + w3 + smallSig0(w11);
+            f += bigSig1(c) + ch(c, d, e) + K[j + 10] + w10;
+            b += f;
+            f += bigSig0(g) + maj(g, h, a);
+            w11 += smallSig1(w9) + w4 + smallSig0(w12);
+            e += bigSig1(b) + ch(b, c, d) + K[j + 11] + w11;
+            a += e;
+            e += bigSig0(f) + maj(f, g, h);
+            w12 += smallSig1(w10) + w5 + smallSig0(w13);
+            d += bigSig1(a) + ch(a, b, c) + K[j + 12] + w12;
+            h += d;
+            d += bigSig0(e) + maj(e, f, g);
+            w13 += smallSig1(w11) + w6 + smallSig0(w14);
+            c += bigSig1(h) + ch(h, a, b) + K[j + 13] + w13;
+            g += c;
+            c += bigSig0(d) + maj(d, e, f);
+            w14 += smallSig1(w12) + w7 + smallSig0(w15);
+            b += bigSig1(g) + ch(g, h, a) + K[j + 14] + w14;
+            f += b;
+            b += bigSig0(c) + maj(c, d, e);
+            w15 += smallSig1(w13) + w8 + smallSig0(w0);
+            a += bigSig1(f) + ch(f, g, h) + K[j + 15] + w15;
+            e += a;
+            a += bigSig0(b) + maj(b, c, d);
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+
+    private static long ch(long x, long y, long z)
+    {
+        // same as (x & y) | (~x & z)
+        return z ^ (x & (y ^ z));
+    }
+
+    private static long maj(long x, long y, long z)
+    {
+        // same as (x & y) | (x & z) | (y & z)
+        return (x & y) | (z & (x | y));
+    }
+
+    private static long bigSig0(long x)
+    {
+        return Long.rotateRight(x, 28) ^ Long.rotateRight(x, 34)
+                ^ Long.rotateRight(x, 39);
+    }
+
+    private static long bigSig1(long x)
+    {
+        return Long.rotateRight(x, 14) ^ Long.rotateRight(x, 18)
+                ^ Long.rotateRight(x, 41);
+    }
+
+    private static long smallSig0(long x)
+    {
+        return Long.rotateRight(x, 1) ^ Long.rotateRight(x, 8) ^ (x >>> 7);
+    }
+
+    private static long smallSig1(long x)
+    {
+        return Long.rotateRight(x, 19) ^ Long.rotateRight(x, 61) ^ (x >>> 6);
+    }
+}
@@ -0,0 +1,179 @@
+package net.meyfa.jciph.hashing;
+
+/**
+ * Computes the same tree hashes as {@link TreeHasher}, but sequentially from
+ * a stream of data.
+ *
+ * <p>
+ * Chunks are hashed as the data arrives, and completed subtrees are combined
+ * as soon as possible. Only the roots of the complete subtrees that still lack
+ * a partner are kept, at most one per tree level; so the memory needed is
+ * logarithmic in the amount of data, and no chunk is ever buffered.
+ *
+ * <p>
+ * Use {@link #digest(byte[], int, int)} to add data and {@link #finish()} to
+ * obtain the root hash, like with a {@link BlockHashFunction}. Like those,
+ * instances of this class are not thread-safe.
+ */
+public class StreamingTreeHasher extends HashFunction
+{
+    /**
+     * Maximum number of pending nodes: one per level, for up to 2^63 leaves,
+     * plus one while combining.
+     */
+    private static final int MAX_PENDING = Long.SIZE + 1;
+
+    private static final byte[] LEAF_PREFIX_BYTES = { TreeHasher.LEAF_PREFIX };
+
+    private final BlockHashFunction function;
+    private final int chunkSize;
+    private final int digestLength;
+
+    // bytes in the current chunk, or -1 if no chunk has been started
+    private int chunkFill = -1;
+    private long leafCount = 0;
+
+    // roots of pending complete subtrees, and their heights (bottom to top)
+    private final byte[] pending;
+    private final int[] heights = new int[MAX_PENDING];
+    private int depth = 0;
+
+    /**
+     * @param function The hash function to use.
+     * @param chunkSize The size of the chunks that form the leaves.
+     * @throws IllegalArgumentException If the chunk size is not positive, or
+     *             if the function does not declare its digest length.
+     */
+    public StreamingTreeHasher(BlockHashFunction function, int chunkSize)
+    {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive");
+        }
+        if (function.getDigestLength() < 0) {
+            throw new IllegalArgumentException(
+                    "hash function does not declare its digest length");
+        }
+
+        this.function = function;
+        this.chunkSize = chunkSize;
+        this.digestLength = function.getDigestLength();
+        this.pending = new byte[MAX_PENDING * digestLength];
+    }
+
+    @Override
+    public byte[] hash(byte[] message)
+    {
+        reset();
+        digest(message);
+
+        return finish();
+    }
+
+    /**
+     * Clear this hasher's state so that computation can begin anew.
+     */
+    public void reset()
+    {
+        chunkFill = -1;
+        leafCount = 0;
+        depth = 0;
+    }
+
+    /**
+     * Add data to be hashed.
+     *
+     * @param partialMessage The message data to add.
+     */
+    public void digest(byte[] partialMessage)
+    {
+        digest(partialMessage, 0, partialMessage.length);
+    }
+
+    /**
+     * Add the given range of the array to the data to be hashed.
+     *
+     * @param partialMessage The array containing the message data to add.
+     * @param off The index of the first byte to add.
+     * @param len The number of bytes to add.
+     * @throws IndexOutOfBoundsException If the range exceeds the array.
+     */
+    public void digest(byte[] partialMessage, int off, int len)
+    {
+        if (off < 0 || len < 0 || len > partialMessage.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (len > 0) {
+            if (chunkFill < 0) {
+                function.reset();
+                function.digest(LEAF_PREFIX_BYTES);
+                chunkFill = 0;
+            }
+
+            int max = Math.min(len, chunkSize - chunkFill);
+            function.digest(partialMessage, off, max);
+            chunkFill += max;
+            off += max;
+            len -= max;
+
+            if (chunkFill == chunkSize) {
+                completeLeaf();
+            }
+        }
+    }
+
+    /**
+     * Finalizes the hashing process with the data that was collected until now.
+     *
+     * @return The root hash.
+     */
+    public byte[] finish()
+    {
+        if (chunkFill >= 0 || leafCount == 0) {
+            // the last chunk is incomplete, or there was no data at all
+            if (chunkFill < 0) {
+                function.reset();
+                function.digest(LEAF_PREFIX_BYTES);
+            }
+            completeLeaf();
+        }
+
+        // combine the pending subtrees from the right
+        while (depth > 1) {
+            combineTop();
+        }
+
+        byte[] root = new byte[digestLength];
+        System.arraycopy(pending, 0, root, 0, digestLength);
+        reset();
+
+        return root;
+    }
+
+    private void completeLeaf()
+    {
+        function.finishInto(pending, depth * digestLength);
+        heights[depth++] = 0;
+        chunkFill = -1;
+        ++leafCount;
+
+        // merge subtrees of equal height
+        while (depth > 1 && heights[depth - 1] == heights[depth - 2]) {
+            combineTop();
+        }
+    }
+
+    /**
+     * Replaces the two topmost pending nodes by their parent.
+     */
+    private void combineTop()
+    {
+        int left = (depth - 2) * digestLength;
+        int right = (depth - 1) * digestLength;
+        TreeHasher.hashNode(function, pending, left, pending, right, pending,
+                left);
+
+        ++heights[depth - 2];
+        --depth;
+    }
+}
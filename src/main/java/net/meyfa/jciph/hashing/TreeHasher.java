@@ -0,0 +1,259 @@
+package net.meyfa.jciph.hashing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+
+/**
+ * Computes tree hashes, whose leaves can be hashed in parallel.
+ *
+ * <p>
+ * The data is split into chunks of a configurable size. Each chunk is hashed
+ * as a leaf, {@code H(0x00 || chunk)}, and adjacent nodes are combined level
+ * by level, {@code H(0x01 || left || right)}, until a single root remains. A
+ * node without a partner on its level is promoted to the next level as it is.
+ * The prefix bytes separate leaves from inner nodes, so that no inner node can
+ * be passed off as a leaf. Empty data consists of one empty chunk.
+ *
+ * <p>
+ * The tree shape is that of RFC 6962 Merkle trees, so
+ * {@link StreamingTreeHasher}, which keeps only a logarithmic number of
+ * pending nodes, arrives at the same root. The root depends on the chunk size
+ * and hash function, and differs from the plain hash of the data.
+ *
+ * <p>
+ * Every leaf is hashed with its own hash function instance, obtained from the
+ * factory given to the constructor. Instances of this class are thread-safe.
+ */
+public class TreeHasher
+{
+    /**
+     * The default chunk size, 1 MiB.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    static final byte LEAF_PREFIX = 0x00;
+    static final byte NODE_PREFIX = 0x01;
+
+    private static final byte[] LEAF_PREFIX_BYTES = { LEAF_PREFIX };
+    private static final byte[] NODE_PREFIX_BYTES = { NODE_PREFIX };
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final int digestLength;
+    private final Supplier<? extends BlockHashFunction> factory;
+
+    /**
+     * Constructs a new tree hasher with the default chunk size, running on
+     * the common pool.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     */
+    public TreeHasher(Supplier<? extends BlockHashFunction> factory)
+    {
+        this(factory, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a new tree hasher running on the common pool.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @param chunkSize The size of the chunks that form the leaves.
+     * @throws IllegalArgumentException If the chunk size is not positive, or
+     *             if the created functions do not declare their digest length.
+     */
+    public TreeHasher(Supplier<? extends BlockHashFunction> factory,
+            int chunkSize)
+    {
+        this(factory, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a new tree hasher.
+     *
+     * @param factory A factory for the hash function instances to use, e.g.
+     *            {@code Sha256::new}.
+     * @param chunkSize The size of the chunks that form the leaves.
+     * @param pool The pool to hash the leaves on.
+     * @throws IllegalArgumentException If the chunk size is not positive, or
+     *             if the created functions do not declare their digest length.
+     */
+    public TreeHasher(Supplier<? extends BlockHashFunction> factory,
+            int chunkSize, ForkJoinPool pool)
+    {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive");
+        }
+
+        BlockHashFunction first = factory.get();
+        if (first.getDigestLength() < 0) {
+            throw new IllegalArgumentException(
+                    "hash function does not declare its digest length");
+        }
+
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.digestLength = first.getDigestLength();
+        this.factory = factory;
+    }
+
+    /**
+     * @return The size of the chunks that form the leaves.
+     */
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    /**
+     * Computes the tree hash of the given data.
+     *
+     * @param data The data to hash.
+     * @return The root hash.
+     */
+    public byte[] hash(byte[] data)
+    {
+        int leaves = leafCount(data.length);
+        byte[] nodes = new byte[leaves * digestLength];
+
+        // one leaf per part, since every leaf is a whole chunk
+        pool.invoke(RangeTask.hashEach(0, leaves, 1, factory,
+                (function, leaf) -> {
+                    int off = leaf * chunkSize;
+                    int len = Math.min(chunkSize, data.length - off);
+                    hashLeaf(function, data, off, len, nodes,
+                            leaf * digestLength);
+                }));
+
+        return reduce(nodes, leaves);
+    }
+
+    /**
+     * Computes the tree hash of the contents of the given file. The file is
+     * mapped into memory instead of being read into the heap.
+     *
+     * @param file The file to hash.
+     * @return The root hash.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] hashFile(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            return hash(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * Computes the tree hash of the given region of a file.
+     *
+     * @param channel The channel of the file to hash.
+     * @param position The position in the file at which the region starts.
+     * @param length The length of the region.
+     * @return The root hash.
+     * @throws IOException If an I/O error occurs.
+     * @see BlockHashFunction#digest(FileChannel, long, long)
+     */
+    public byte[] hash(FileChannel channel, long position, long length)
+            throws IOException
+    {
+        if (position < 0 || length < 0) {
+            throw new IllegalArgumentException("negative position or length");
+        }
+
+        int leaves = leafCount(length);
+        byte[] nodes = new byte[leaves * digestLength];
+
+        try {
+            pool.invoke(RangeTask.hashEach(0, leaves, 1, factory,
+                    (function, leaf) -> {
+                        long off = (long) leaf * chunkSize;
+                        long len = Math.min(chunkSize, length - off);
+                        try {
+                            function.reset();
+                            function.digest(LEAF_PREFIX_BYTES);
+                            function.digest(channel, position + off, len);
+                            function.finishInto(nodes, leaf * digestLength);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return reduce(nodes, leaves);
+    }
+
+    private int leafCount(long length)
+    {
+        long leaves = Math.max(1, (length + chunkSize - 1) / chunkSize);
+        if (leaves * digestLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many chunks");
+        }
+
+        return (int) leaves;
+    }
+
+    /**
+     * Combines the given leaf hashes level by level, in place, into the root.
+     */
+    private byte[] reduce(byte[] nodes, int count)
+    {
+        BlockHashFunction function = factory.get();
+        while (count > 1) {
+            int next = 0;
+            for (int i = 0; i + 1 < count; i += 2, ++next) {
+                hashNode(function, nodes, i * digestLength, nodes,
+                        (i + 1) * digestLength, nodes, next * digestLength);
+            }
+            if ((count & 1) != 0) {
+                // promote the lone node
+                System.arraycopy(nodes, (count - 1) * digestLength, nodes,
+                        next * digestLength, digestLength);
+                ++next;
+            }
+            count = next;
+        }
+
+        byte[] root = new byte[digestLength];
+        System.arraycopy(nodes, 0, root, 0, digestLength);
+
+        return root;
+    }
+
+    /**
+     * Computes the hash of a leaf, {@code H(0x00 || data)}.
+     */
+    static void hashLeaf(BlockHashFunction function, byte[] data, int off,
+            int len, byte[] out, int outOff)
+    {
+        function.reset();
+        function.digest(LEAF_PREFIX_BYTES);
+        function.digest(data, off, len);
+        function.finishInto(out, outOff);
+    }
+
+    /**
+     * Computes the hash of an inner node, {@code H(0x01 || left || right)}.
+     * The output may overlap with the inputs.
+     */
+    static void hashNode(BlockHashFunction function, byte[] left, int leftOff,
+            byte[] right, int rightOff, byte[] out, int outOff)
+    {
+        int len = function.getDigestLength();
+
+        function.reset();
+        function.digest(NODE_PREFIX_BYTES);
+        function.digest(left, leftOff, len);
+        function.digest(right, rightOff, len);
+        function.finishInto(out, outOff);
+    }
+}
@@ -0,0 +1,98 @@
+package net.meyfa.jciph.hashing;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+
+/**
+ * Hashing of {@link MemorySegment}s, such as off-heap arenas and mapped
+ * files. This class is part of the Java 22 layer of the multi-release jar, and
+ * is not available on earlier versions.
+ *
+ * <p>
+ * Native and mapped segments of any size are passed to
+ * {@link BlockHashFunction#digest(java.nio.ByteBuffer)} as direct buffer views
+ * of consecutive windows, so full blocks are read straight from the
+ * segment's memory and never copied into the heap. The windows are a
+ * multiple of every block size, so no bytes need to be buffered between
+ * them.
+ */
+public final class MemorySegments
+{
+    /**
+     * The size of the windows in which segments are viewed as buffers. A
+     * buffer cannot exceed 2 GiB, and must be a multiple of every block size.
+     */
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The size of the chunks in which segments that cannot be viewed as
+     * buffers are copied.
+     */
+    private static final int COPY_CHUNK_SIZE = 8192;
+
+    private MemorySegments()
+    {
+    }
+
+    /**
+     * Adds the contents of the given segment to the data hashed by the given
+     * function.
+     *
+     * @param function The hash function.
+     * @param segment The segment containing the message data to add.
+     * @throws IllegalStateException If the segment's scope is not alive.
+     * @throws WrongThreadException If the segment is confined to another
+     *             thread.
+     */
+    public static void digest(BlockHashFunction function,
+            MemorySegment segment)
+    {
+        long length = segment.byteSize();
+
+        // heap segments of arrays other than byte[] have no buffer view
+        boolean viewable = segment.heapBase()
+                .map(base -> base instanceof byte[])
+                .orElse(true);
+        if (!viewable) {
+            digestCopied(function, segment, length);
+            return;
+        }
+
+        for (long off = 0; off < length; off += WINDOW_SIZE) {
+            long size = Math.min(length - off, WINDOW_SIZE);
+            function.digest(segment.asSlice(off, size).asByteBuffer());
+        }
+    }
+
+    /**
+     * Computes the hash of the contents of the given segment.
+     *
+     * @param function The hash function.
+     * @param segment The segment to hash.
+     * @return The hash, as a byte array.
+     * @throws IllegalStateException If the segment's scope is not alive.
+     * @throws WrongThreadException If the segment is confined to another
+     *             thread.
+     */
+    public static byte[] hash(BlockHashFunction function,
+            MemorySegment segment)
+    {
+        function.reset();
+        digest(function, segment);
+
+        return function.finish();
+    }
+
+    private static void digestCopied(BlockHashFunction function,
+            MemorySegment segment, long length)
+    {
+        byte[] chunk = new byte[(int) Math.min(length, COPY_CHUNK_SIZE)];
+        for (long off = 0; off < length; off += chunk.length) {
+            int size = (int) Math.min(length - off, chunk.length);
+            MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, off, chunk, 0,
+                    size);
+            function.digest(chunk, 0, size);
+        }
+    }
+}
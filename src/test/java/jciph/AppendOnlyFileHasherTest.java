@@ -0,0 +1,200 @@
+package jciph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import net.meyfa.jciph.hashing.AppendOnlyFileHasher;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+
+
+public class AppendOnlyFileHasherTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger blocksProcessed = new AtomicInteger();
+
+    private class CountingSha256 extends Sha256
+    {
+        @Override
+        protected void processBlock(byte[] block, int off)
+        {
+            super.processBlock(block, off);
+            blocksProcessed.incrementAndGet();
+        }
+
+        @Override
+        protected void processBlock(ByteBuffer block, int index)
+        {
+            super.processBlock(block, index);
+            blocksProcessed.incrementAndGet();
+        }
+    }
+
+    private static byte[] random(int length, long seed)
+    {
+        byte[] b = new byte[length];
+        new Random(seed).nextBytes(b);
+
+        return b;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b)
+    {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+
+        return result;
+    }
+
+    @Test
+    public void testHashesAppendedBytesOnly() throws IOException
+    {
+        Path file = folder.newFile("journal.log").toPath();
+        byte[] first = random(100_000, 51);
+        byte[] second = random(1_000, 52);
+        Files.write(file, first);
+
+        AppendOnlyFileHasher hasher = new AppendOnlyFileHasher(
+                CountingSha256::new);
+
+        assertArrayEquals(new Sha256().hash(first), hasher.hash(file));
+        assertTrue(Files.exists(AppendOnlyFileHasher.getCheckpointFile(file)));
+
+        Files.write(file, second, StandardOpenOption.APPEND);
+        blocksProcessed.set(0);
+
+        assertArrayEquals(new Sha256().hash(concat(first, second)),
+                hasher.hash(file));
+        // the appended bytes plus the buffered tail, and the padding
+        assertTrue(blocksProcessed.get() <= second.length / 64 + 3);
+    }
+
+    @Test
+    public void testUnchangedFile() throws IOException
+    {
+        Path file = folder.newFile().toPath();
+        byte[] b = random(5_000, 53);
+        Files.write(file, b);
+
+        AppendOnlyFileHasher hasher = new AppendOnlyFileHasher(Sha512::new);
+        hasher.hash(file);
+
+        assertArrayEquals(new Sha512().hash(b), hasher.hash(file));
+    }
+
+    @Test
+    public void testTruncatedFile() throws IOException
+    {
+        Path file = folder.newFile().toPath();
+        Files.write(file, random(5_000, 54));
+
+        AppendOnlyFileHasher hasher = new AppendOnlyFileHasher(Sha256::new);
+        hasher.hash(file);
+
+        byte[] b = random(1_000, 55);
+        Files.write(file, b);
+
+        assertArrayEquals(new Sha256().hash(b), hasher.hash(file));
+    }
+
+    @Test
+    public void testReplacedFile() throws IOException
+    {
+        Path file = folder.newFile().toPath();
+        Files.write(file, random(5_000, 57));
+
+        AppendOnlyFileHasher hasher = new AppendOnlyFileHasher(Sha256::new);
+        hasher.hash(file);
+
+        // a larger file moved over the original
+        byte[] b = random(10_000, 58);
+        Path replacement = folder.newFile().toPath();
+        Files.write(replacement, b);
+        Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING);
+
+        assertArrayEquals(new Sha256().hash(b), hasher.hash(file));
+    }
+
+    @Test
+    public void testRewrittenFile() throws IOException
+    {
+        Path file = folder.newFile().toPath();
+        Files.write(file, random(5_000, 59));
+
+        AppendOnlyFileHasher hasher = new AppendOnlyFileHasher(Sha256::new);
+        hasher.hash(file);
+
+        // a larger file written in place, keeping the file's identity
+        byte[] b = random(10_000, 60);
+        Files.write(file, b);
+
+        assertArrayEquals(new Sha256().hash(b), hasher.hash(file));
+    }
+
+    @Test
+    public void testInvalidCheckpoint() throws IOException
+    {
+        Path file = folder.newFile().toPath();
+        byte[] b = random(5_000, 56);
+        Files.write(file, b);
+
+        // a checkpoint written for SHA-512 cannot be used for SHA-256
+        new AppendOnlyFileHasher(Sha512::new).hash(file);
+        assertArrayEquals(new Sha256().hash(b),
+                new AppendOnlyFileHasher(Sha256::new).hash(file));
+
+        Files.write(AppendOnlyFileHasher.getCheckpointFile(file),
+                new byte[] { 1, 2, 3 });
+        assertArrayEquals(new Sha256().hash(b),
+                new AppendOnlyFileHasher(Sha256::new).hash(file));
+    }
+
+    @Test
+    public void testCorruptedCheckpoint() throws IOException
+    {
+        Path file = folder.newFile().toPath();
+        byte[] b = random(5_000, 61);
+        Files.write(file, b);
+
+        AppendOnlyFileHasher hasher = new AppendOnlyFileHasher(Sha256::new);
+        hasher.hash(file);
+
+        // keep the magic number and offset, but follow them with a string
+        // that is not valid modified UTF-8
+        Path checkpoint = AppendOnlyFileHasher.getCheckpointFile(file);
+        byte[] corrupted = Arrays.copyOf(Files.readAllBytes(checkpoint), 16);
+        corrupted[12] = 0;
+        corrupted[13] = 2;
+        corrupted[14] = (byte) 0xFF;
+        corrupted[15] = (byte) 0xFF;
+        Files.write(checkpoint, corrupted);
+
+        assertArrayEquals(new Sha256().hash(b), hasher.hash(file));
+    }
+
+    @Test
+    public void testCheckpointName()
+    {
+        Path file = folder.getRoot().toPath().resolve("a.log");
+
+        assertEquals(folder.getRoot().toPath().resolve("a.log.hashstate"),
+                AppendOnlyFileHasher.getCheckpointFile(file));
+    }
+}
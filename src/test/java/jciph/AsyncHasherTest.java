@@ -0,0 +1,248 @@
+package jciph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import net.meyfa.jciph.hashing.AsyncHasher;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+
+
+public class AsyncHasherTest
+{
+    @Test
+    public void testHashes() throws Exception
+    {
+        Random random = new Random(71);
+        List<byte[]> messages = new ArrayList<>();
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+
+        try (AsyncHasher hasher = new AsyncHasher(Sha512::new, 3, 16)) {
+            for (int i = 0; i < 1000; ++i) {
+                byte[] b = new byte[random.nextInt(300)];
+                random.nextBytes(b);
+                messages.add(b);
+                futures.add(hasher.submit(b));
+            }
+
+            for (int i = 0; i < messages.size(); ++i) {
+                assertArrayEquals(new Sha512().hash(messages.get(i)),
+                        futures.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    public void testOneFunctionPerWorker() throws Exception
+    {
+        AtomicInteger created = new AtomicInteger();
+
+        try (AsyncHasher hasher = new AsyncHasher(() -> {
+            created.incrementAndGet();
+            return new Sha256();
+        }, 2, 8)) {
+            for (int i = 0; i < 100; ++i) {
+                hasher.submit(new byte[i]).get();
+            }
+        }
+
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testTrySubmitWhenFull() throws Exception
+    {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // a function that blocks the only worker until released
+        AsyncHasher hasher = new AsyncHasher(() -> new Sha256() {
+            @Override
+            public byte[] hash(byte[] message)
+            {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.hash(message);
+            }
+        }, 1, 2);
+
+        try {
+            CompletableFuture<byte[]> first = hasher.trySubmit(new byte[1]);
+            blocked.await();
+
+            // the queue holds two messages
+            assertFalse(hasher.trySubmit(new byte[2])
+                    .isCompletedExceptionally());
+            assertFalse(hasher.trySubmit(new byte[3])
+                    .isCompletedExceptionally());
+            CompletableFuture<byte[]> rejected = hasher.trySubmit(new byte[4]);
+
+            try {
+                rejected.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+
+            release.countDown();
+            assertArrayEquals(new Sha256().hash(new byte[1]), first.get());
+        } finally {
+            release.countDown();
+            hasher.close();
+        }
+    }
+
+    @Test
+    public void testCompletesFutureOnError() throws Exception
+    {
+        List<Throwable> uncaught = new ArrayList<>();
+
+        // a function that fails with an error on empty messages
+        AsyncHasher hasher = new AsyncHasher(() -> new Sha256() {
+            @Override
+            public byte[] hash(byte[] message)
+            {
+                if (message.length == 0) {
+                    throw new OutOfMemoryError("test");
+                }
+                return super.hash(message);
+            }
+        }, 1, 4, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                synchronized (uncaught) {
+                    uncaught.add(e);
+                }
+            });
+            return thread;
+        });
+
+        try {
+            CompletableFuture<byte[]> failed = hasher.submit(new byte[0]);
+            CompletableFuture<byte[]> next = hasher.submit(new byte[1]);
+
+            try {
+                failed.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof OutOfMemoryError);
+            }
+
+            // the worker survives and hashes the following messages
+            assertArrayEquals(new Sha256().hash(new byte[1]), next.get());
+        } finally {
+            hasher.close();
+        }
+
+        synchronized (uncaught) {
+            assertEquals(1, uncaught.size());
+            assertTrue(uncaught.get(0) instanceof OutOfMemoryError);
+        }
+    }
+
+    @Test
+    public void testCloseHashesQueuedMessages() throws Exception
+    {
+        AsyncHasher hasher = new AsyncHasher(Sha256::new, 2, 100);
+
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            futures.add(hasher.submit(new byte[i]));
+        }
+        hasher.close();
+
+        for (int i = 0; i < futures.size(); ++i) {
+            assertTrue(futures.get(i).isDone());
+            assertArrayEquals(new Sha256().hash(new byte[i]),
+                    futures.get(i).get());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testCloseFromCallback() throws Exception
+    {
+        AsyncHasher hasher = new AsyncHasher(Sha256::new, 1, 4);
+
+        CompletableFuture<Void> closed = hasher.submit(new byte[1])
+                .thenRun(hasher::close);
+        closed.get();
+
+        try {
+            hasher.submit(new byte[2]);
+            fail();
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testCloseFromCallbackWithFullQueue() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+
+        // a function that blocks the only worker until released
+        AsyncHasher hasher = new AsyncHasher(() -> new Sha256() {
+            @Override
+            public byte[] hash(byte[] message)
+            {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.hash(message);
+            }
+        }, 1, 2);
+
+        CompletableFuture<Void> closed = hasher.submit(new byte[1])
+                .thenRun(hasher::close);
+        // fill the queue behind the message being hashed
+        while (hasher.getQueueSize() > 0) {
+            Thread.yield();
+        }
+        CompletableFuture<byte[]> second = hasher.submit(new byte[2]);
+        CompletableFuture<byte[]> third = hasher.submit(new byte[3]);
+
+        release.countDown();
+        closed.get();
+
+        // the queued messages are still hashed, then the worker stops
+        assertArrayEquals(new Sha256().hash(new byte[2]), second.get());
+        assertArrayEquals(new Sha256().hash(new byte[3]), third.get());
+        hasher.close();
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testSubmitAfterClose() throws Exception
+    {
+        AsyncHasher hasher = new AsyncHasher(Sha256::new, 1, 1);
+        hasher.close();
+
+        hasher.submit(new byte[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsInvalidThreads()
+    {
+        new AsyncHasher(Sha256::new, 0, 1);
+    }
+}
@@ -0,0 +1,131 @@
+package jciph;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import net.meyfa.jciph.hashing.BatchHasher;
+import net.meyfa.jciph.hashing.BlockHashFunction;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+
+
+public class BatchHasherTest
+{
+    private static byte[][] randomMessages(int count)
+    {
+        Random random = new Random(count);
+        byte[][] messages = new byte[count][];
+        for (int i = 0; i < count; ++i) {
+            messages[i] = new byte[random.nextInt(1000)];
+            random.nextBytes(messages[i]);
+        }
+        return messages;
+    }
+
+    private static void assertHashes(BlockHashFunction function,
+            byte[][] messages, byte[] out, int outOff)
+    {
+        int len = function.getDigestLength();
+        for (int i = 0; i < messages.length; ++i) {
+            int off = outOff + i * len;
+            assertArrayEquals("message " + i, function.hash(messages[i]),
+                    Arrays.copyOfRange(out, off, off + len));
+        }
+    }
+
+    @Test
+    public void testDigestLength()
+    {
+        assertEquals(32, new BatchHasher(Sha256::new).getDigestLength());
+        assertEquals(64, new BatchHasher(Sha512::new).getDigestLength());
+    }
+
+    // hashAll(byte[][])
+
+    @Test
+    public void testHashAll()
+    {
+        byte[][] messages = randomMessages(1000);
+
+        byte[] out = new BatchHasher(Sha256::new).hashAll(messages);
+
+        assertEquals(1000 * 32, out.length);
+        assertHashes(new Sha256(), messages, out, 0);
+    }
+
+    @Test
+    public void testHashAllEmpty()
+    {
+        assertEquals(0, new BatchHasher(Sha256::new).hashAll(new byte[0][])
+                .length);
+    }
+
+    @Test
+    public void testHashAllCustomPool()
+    {
+        byte[][] messages = randomMessages(100);
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            byte[] out = new BatchHasher(Sha512::new, pool).hashAll(messages);
+            assertHashes(new Sha512(), messages, out, 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHashAllChecksSize()
+    {
+        // 2 * 2^30 bytes of hashes do not fit into an array
+        BatchHasher hasher = new BatchHasher(() -> new Sha256()
+        {
+            @Override
+            public int getDigestLength()
+            {
+                return 1 << 30;
+            }
+        });
+
+        hasher.hashAll(new byte[2][]);
+    }
+
+    // hashAll(List<byte[]>)
+
+    @Test
+    public void testHashAllList()
+    {
+        byte[][] messages = randomMessages(50);
+
+        byte[] out = new BatchHasher(Sha256::new)
+                .hashAll(Arrays.asList(messages));
+
+        assertHashes(new Sha256(), messages, out, 0);
+    }
+
+    // hashAll(byte[][], byte[], int)
+
+    @Test
+    public void testHashAllIntoArray()
+    {
+        byte[][] messages = randomMessages(20);
+
+        byte[] out = new byte[5 + 20 * 32];
+        new BatchHasher(Sha256::new).hashAll(messages, out, 5);
+
+        assertHashes(new Sha256(), messages, out, 5);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testHashAllIntoArrayChecksBounds()
+    {
+        new BatchHasher(Sha256::new).hashAll(randomMessages(2), new byte[64],
+                1);
+    }
+}
@@ -2,6 +2,7 @@ package jciph;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 
 import org.junit.Test;
@@ -117,4 +118,49 @@ public class BlockHashFunctionTest
         assertEquals(42, proc[30]);
         assertEquals(64, proc[31]);
     }
+
+    @Test
+    public void testDigestRangeProcessesMostPossible()
+    {
+        MockBlockHashFunction mock = new MockBlockHashFunction();
+
+        byte[] b = new byte[40];
+        b[5] = 42;
+        b[34] = 64;
+        mock.digest(b, 5, 30);
+
+        assertEquals(30, mock.processed.size());
+
+        byte[] proc = mock.processed.toByteArray();
+        assertEquals(42, proc[0]);
+        assertEquals(64, proc[29]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testDigestRangeChecksBounds()
+    {
+        new MockBlockHashFunction().digest(new byte[10], 5, 6);
+    }
+
+    @Test
+    public void testDigestDirectBufferBuffersUnprocessedBytes()
+    {
+        MockBlockHashFunction mock = new MockBlockHashFunction();
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(32);
+        buf.put(0, (byte) 42);
+        buf.put(31, (byte) 64);
+        mock.digest(buf);
+
+        assertEquals(32, buf.position());
+        assertEquals(30, mock.processed.size());
+
+        mock.digest(ByteBuffer.allocateDirect(8));
+
+        assertEquals(40, mock.processed.size());
+
+        byte[] proc = mock.processed.toByteArray();
+        assertEquals(42, proc[0]);
+        assertEquals(64, proc[31]);
+    }
 }
@@ -0,0 +1,100 @@
+package jciph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import net.meyfa.jciph.hashing.ConcurrentHashFunction;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+
+
+public class ConcurrentHashFunctionTest
+{
+    @Test
+    public void testHash()
+    {
+        byte[] b = new byte[300];
+        new Random(8).nextBytes(b);
+
+        ConcurrentHashFunction function = new ConcurrentHashFunction(
+                Sha256::new);
+
+        assertArrayEquals(new Sha256().hash(b), function.hash(b));
+    }
+
+    @Test
+    public void testHashIntoArray()
+    {
+        byte[] b = new byte[300];
+        new Random(8).nextBytes(b);
+
+        byte[] out = new byte[64];
+        int written = new ConcurrentHashFunction(Sha512::new).hash(b, 0, 300,
+                out, 0);
+
+        assertEquals(64, written);
+        assertArrayEquals(new Sha512().hash(b), out);
+    }
+
+    @Test
+    public void testReusesInstances()
+    {
+        AtomicInteger created = new AtomicInteger();
+        ConcurrentHashFunction function = new ConcurrentHashFunction(() -> {
+            created.incrementAndGet();
+            return new Sha256();
+        }, 4);
+
+        for (int i = 0; i < 100; ++i) {
+            function.hash(new byte[i]);
+        }
+
+        assertEquals(1, created.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsInvalidStripes()
+    {
+        new ConcurrentHashFunction(Sha256::new, 0);
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception
+    {
+        // more threads than stripes, so that slots are contended
+        ConcurrentHashFunction function = new ConcurrentHashFunction(
+                Sha256::new, 2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; ++t) {
+                final long seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    Sha256 reference = new Sha256();
+                    for (int i = 0; i < 500; ++i) {
+                        byte[] b = new byte[random.nextInt(200)];
+                        random.nextBytes(b);
+                        assertArrayEquals(reference.hash(b), function.hash(b));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
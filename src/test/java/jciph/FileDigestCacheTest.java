@@ -0,0 +1,139 @@
+package jciph;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import net.meyfa.jciph.hashing.FileDigestCache;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+
+
+public class FileDigestCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger filesHashed = new AtomicInteger();
+
+    private class CountingSha256 extends Sha256
+    {
+        @Override
+        public byte[] hashFile(Path file) throws IOException
+        {
+            filesHashed.incrementAndGet();
+            return super.hashFile(file);
+        }
+    }
+
+    private Path newFile(int length, long seed) throws IOException
+    {
+        byte[] b = new byte[length];
+        new Random(seed).nextBytes(b);
+
+        Path file = folder.newFile().toPath();
+        Files.write(file, b);
+
+        return file;
+    }
+
+    @Test
+    public void testCachesUnchangedFile() throws IOException
+    {
+        Path file = newFile(10_000, 81);
+        FileDigestCache cache = new FileDigestCache(CountingSha256::new, 10);
+
+        byte[] expected = new Sha256().hash(Files.readAllBytes(file));
+        assertArrayEquals(expected, cache.getDigest(file));
+        assertArrayEquals(expected, cache.getDigest(file));
+
+        assertEquals(1, filesHashed.get());
+    }
+
+    @Test
+    public void testRehashesChangedFile() throws IOException
+    {
+        Path file = newFile(10_000, 82);
+        FileDigestCache cache = new FileDigestCache(CountingSha256::new, 10);
+        cache.getDigest(file);
+
+        // same size, different content and modification time
+        byte[] b = new byte[10_000];
+        Files.write(file, b);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(
+                Files.getLastModifiedTime(file).toMillis() + 5_000));
+
+        assertArrayEquals(new Sha256().hash(b), cache.getDigest(file));
+        assertEquals(2, filesHashed.get());
+    }
+
+    @Test
+    public void testEviction() throws IOException
+    {
+        FileDigestCache cache = new FileDigestCache(CountingSha256::new, 2);
+        Path a = newFile(100, 83);
+        Path b = newFile(100, 84);
+        Path c = newFile(100, 85);
+
+        cache.getDigest(a);
+        cache.getDigest(b);
+        cache.getDigest(a);
+        cache.getDigest(c); // evicts b
+        assertEquals(2, cache.size());
+
+        cache.getDigest(a);
+        assertEquals(3, filesHashed.get());
+        cache.getDigest(b);
+        assertEquals(4, filesHashed.get());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException
+    {
+        Path a = newFile(1_000, 86);
+        Path b = newFile(2_000, 87);
+        Path index = folder.getRoot().toPath().resolve("digests.idx");
+
+        FileDigestCache cache = new FileDigestCache(Sha256::new, 10);
+        cache.getDigest(a);
+        cache.getDigest(b);
+        cache.save(index);
+
+        FileDigestCache restored = new FileDigestCache(CountingSha256::new,
+                10);
+        restored.load(index);
+        assertEquals(2, restored.size());
+
+        assertArrayEquals(cache.getDigest(a), restored.getDigest(a));
+        assertArrayEquals(cache.getDigest(b), restored.getDigest(b));
+        assertEquals(0, filesHashed.get());
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadRejectsOtherFunction() throws IOException
+    {
+        Path index = folder.getRoot().toPath().resolve("digests.idx");
+        new FileDigestCache(Sha512::new, 10).save(index);
+
+        new FileDigestCache(Sha256::new, 10).load(index);
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadRejectsGarbage() throws IOException
+    {
+        Path index = folder.newFile().toPath();
+        Files.write(index, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+        new FileDigestCache(Sha256::new, 10).load(index);
+    }
+}
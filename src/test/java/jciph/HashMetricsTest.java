@@ -0,0 +1,92 @@
+package jciph;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import net.meyfa.jciph.hashing.HashMetrics;
+import net.meyfa.jciph.hashing.LogHistogram;
+import net.meyfa.jciph.hashing.MessageDigestFunction;
+import net.meyfa.jciph.hashing.Sha256;
+
+
+public class HashMetricsTest
+{
+    @Test
+    public void testDisabledByDefault()
+    {
+        assertNull(new Sha256().getMetricsListener());
+    }
+
+    @Test
+    public void testCounts()
+    {
+        HashMetrics metrics = new HashMetrics();
+        Sha256 function = new Sha256();
+        function.setMetricsListener(metrics);
+
+        function.hash(new byte[100]);
+        function.digest(new byte[30]);
+        function.digest(new byte[40]);
+        function.finish();
+
+        assertEquals(170, metrics.getBytesDigested());
+        // one block of the first message, one completed by the second digest
+        assertEquals(2, metrics.getBlocksCompressed());
+        assertEquals(2, metrics.getHashesFinished());
+        assertEquals(2, metrics.getLatencyHistogram().getTotalCount());
+        assertEquals(2, metrics.getMessageLengthHistogram().getTotalCount());
+        assertEquals(100, metrics.getMessageLengthHistogram().getMaxValue());
+    }
+
+    @Test
+    public void testMessageDigestFunction()
+    {
+        HashMetrics metrics = new HashMetrics();
+        MessageDigestFunction function = MessageDigestFunction.sha512();
+        function.setMetricsListener(metrics);
+
+        byte[] out = new byte[64];
+        function.hash(new byte[300], 0, 300, out, 0);
+
+        assertEquals(300, metrics.getBytesDigested());
+        assertEquals(2, metrics.getBlocksCompressed());
+        assertEquals(1, metrics.getHashesFinished());
+    }
+
+    @Test
+    public void testHistogram()
+    {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 1; i <= 10_000; ++i) {
+            histogram.record(i);
+        }
+
+        assertEquals(10_000, histogram.getTotalCount());
+        assertEquals(10_000, histogram.getMaxValue());
+
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 5_000 && median <= 5_000 * 1.04);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 9_900 && p99 <= 10_000);
+        assertEquals(1, histogram.getValueAtPercentile(0));
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testCreateWithoutProvider()
+    {
+        // the JFR module is not on this project's class path
+        try (HashMetrics metrics = HashMetrics.create()) {
+            assertEquals(HashMetrics.class, metrics.getClass());
+        }
+    }
+}
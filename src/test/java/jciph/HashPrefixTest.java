@@ -0,0 +1,119 @@
+package jciph;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import net.meyfa.jciph.hashing.HashPrefix;
+import net.meyfa.jciph.hashing.HashPrefixCache;
+import net.meyfa.jciph.hashing.MessageDigestFunction;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+
+
+public class HashPrefixTest
+{
+    private static byte[] concat(byte[] a, byte[] b)
+    {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+
+        return result;
+    }
+
+    @Test
+    public void testMatchesPlainHash()
+    {
+        Random random = new Random(91);
+        Sha256 sha256 = new Sha256();
+        Sha512 sha512 = new Sha512();
+
+        // prefixes ending inside a block and exactly at a block boundary
+        for (int prefixLength : new int[] { 0, 1, 63, 64, 127, 128, 3000 }) {
+            byte[] prefix = new byte[prefixLength];
+            random.nextBytes(prefix);
+            HashPrefix p256 = new HashPrefix(sha256, prefix);
+            HashPrefix p512 = new HashPrefix(sha512, prefix);
+            assertEquals(prefixLength, p256.getLength());
+
+            for (int i = 0; i < 5; ++i) {
+                byte[] payload = new byte[random.nextInt(200)];
+                random.nextBytes(payload);
+                byte[] message = concat(prefix, payload);
+
+                assertArrayEquals(new Sha256().hash(message),
+                        p256.hash(sha256, payload));
+                assertArrayEquals(new Sha512().hash(message),
+                        p512.hash(sha512, payload));
+            }
+        }
+    }
+
+    @Test
+    public void testStart()
+    {
+        byte[] prefix = new byte[100];
+        new Random(92).nextBytes(prefix);
+        HashPrefix p = new HashPrefix(new Sha256(), prefix);
+
+        Sha256 function = new Sha256();
+        function.digest(new byte[10]); // discarded
+        p.start(function);
+        function.digest(new byte[30]);
+        function.digest(new byte[40]);
+
+        assertArrayEquals(new Sha256().hash(concat(prefix, new byte[70])),
+                function.finish());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsOtherFunction()
+    {
+        HashPrefix p = new HashPrefix(new Sha256(), new byte[100]);
+        p.start(new Sha512());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRejectsUnsupportedFunction()
+    {
+        new HashPrefix(MessageDigestFunction.sha256(), new byte[100]);
+    }
+
+    @Test
+    public void testCache()
+    {
+        HashPrefixCache cache = new HashPrefixCache(Sha512::new, 4);
+        byte[] prefix = new byte[2048];
+        new Random(93).nextBytes(prefix);
+
+        HashPrefix p = cache.get(prefix);
+        assertSame(p, cache.get(prefix.clone()));
+        assertEquals(1, cache.size());
+
+        byte[] payload = new byte[100];
+        assertArrayEquals(new Sha512().hash(concat(prefix, payload)),
+                cache.hash(prefix, payload));
+    }
+
+    @Test
+    public void testCacheEviction()
+    {
+        HashPrefixCache cache = new HashPrefixCache(Sha256::new, 4);
+        HashPrefix first = cache.get(new byte[] { 0 });
+
+        for (int i = 1; i < 100; ++i) {
+            cache.get(new byte[] { (byte) i });
+        }
+        assertEquals(4, cache.size());
+        assertNotSame(first, cache.get(new byte[] { 0 }));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,99 @@
+package jciph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import net.meyfa.jciph.hashing.HashingChannel;
+import net.meyfa.jciph.hashing.Sha256;
+
+
+public class HashingChannelTest
+{
+    private static byte[] data()
+    {
+        byte[] b = new byte[1000];
+        new Random(10).nextBytes(b);
+        return b;
+    }
+
+    @Test
+    public void testSink() throws IOException
+    {
+        byte[] b = data();
+
+        HashingChannel channel = new HashingChannel(new Sha256());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(600);
+        direct.put(b, 0, 600).flip();
+        assertEquals(600, channel.write(direct));
+        assertEquals(400, channel.write(ByteBuffer.wrap(b, 600, 400)));
+
+        assertArrayEquals(new Sha256().hash(b),
+                channel.getHashFunction().finish());
+    }
+
+    @Test
+    public void testPassesOnAndHashesAcceptedBytes() throws IOException
+    {
+        byte[] b = data();
+
+        // a channel that accepts at most 64 bytes per write
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        WritableByteChannel sink = Channels.newChannel(target);
+        WritableByteChannel limited = new WritableByteChannel()
+        {
+            @Override
+            public boolean isOpen()
+            {
+                return sink.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                sink.close();
+            }
+
+            @Override
+            public int write(ByteBuffer src) throws IOException
+            {
+                ByteBuffer part = src.duplicate();
+                part.limit(part.position() + Math.min(64, part.remaining()));
+                int n = sink.write(part);
+                src.position(src.position() + n);
+                return n;
+            }
+        };
+
+        HashingChannel channel = new HashingChannel(limited, new Sha256());
+        ByteBuffer buf = ByteBuffer.wrap(b);
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+
+        assertArrayEquals(b, target.toByteArray());
+        assertArrayEquals(new Sha256().hash(b),
+                channel.getHashFunction().finish());
+    }
+
+    @Test(expected = ClosedChannelException.class)
+    public void testWriteAfterClose() throws IOException
+    {
+        HashingChannel channel = new HashingChannel(new Sha256());
+        channel.close();
+
+        assertFalse(channel.isOpen());
+        channel.write(ByteBuffer.allocate(1));
+    }
+}
@@ -0,0 +1,82 @@
+package jciph;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import net.meyfa.jciph.hashing.HashingInputStream;
+import net.meyfa.jciph.hashing.Sha256;
+
+
+public class HashingInputStreamTest
+{
+    private static byte[] data()
+    {
+        byte[] b = new byte[1000];
+        new Random(10).nextBytes(b);
+        return b;
+    }
+
+    @Test
+    public void testReadArray() throws IOException
+    {
+        byte[] b = data();
+
+        HashingInputStream in = new HashingInputStream(
+                new ByteArrayInputStream(b), new Sha256());
+
+        byte[] buf = new byte[300];
+        int n;
+        do {
+            n = in.read(buf, 10, 77);
+        } while (n >= 0);
+        in.close();
+
+        assertArrayEquals(new Sha256().hash(b), in.getHashFunction().finish());
+    }
+
+    @Test
+    public void testReadSingleBytes() throws IOException
+    {
+        byte[] b = data();
+
+        HashingInputStream in = new HashingInputStream(
+                new ByteArrayInputStream(b), new Sha256());
+        while (in.read() >= 0) {
+        }
+        in.close();
+
+        assertArrayEquals(new Sha256().hash(b), in.getHashFunction().finish());
+    }
+
+    @Test
+    public void testSkipHashesSkippedBytes() throws IOException
+    {
+        byte[] b = data();
+
+        InputStream in = new HashingInputStream(new ByteArrayInputStream(b),
+                new Sha256());
+        in.read(new byte[100]);
+
+        assertEquals(500, in.skip(500));
+        assertEquals(400, in.skip(1000));
+        assertEquals(0, in.skip(-1));
+
+        assertArrayEquals(new Sha256().hash(b),
+                ((HashingInputStream) in).getHashFunction().finish());
+    }
+
+    @Test
+    public void testMarkNotSupported()
+    {
+        assertFalse(new HashingInputStream(new ByteArrayInputStream(data()),
+                new Sha256()).markSupported());
+    }
+}
@@ -0,0 +1,157 @@
+package jciph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import net.meyfa.jciph.hashing.HashingOutputStream;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+
+
+public class HashingOutputStreamTest
+{
+    private static byte[] data()
+    {
+        byte[] b = new byte[1000];
+        new Random(10).nextBytes(b);
+        return b;
+    }
+
+    private static class RecordingStream extends ByteArrayOutputStream
+    {
+        int flushed, closed;
+
+        @Override
+        public void flush()
+        {
+            ++flushed;
+        }
+
+        @Override
+        public void close()
+        {
+            ++closed;
+        }
+    }
+
+    @Test
+    public void testWriteHashesAndPassesOn() throws IOException
+    {
+        byte[] b = data();
+
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        HashingOutputStream out = new HashingOutputStream(target,
+                new Sha512());
+        out.write(b, 0, 333);
+        out.write(b[333]);
+        out.write(b, 334, 666);
+        out.close();
+
+        assertArrayEquals(b, target.toByteArray());
+        assertArrayEquals(new Sha512().hash(b),
+                out.getHashFunction().finish());
+    }
+
+    @Test
+    public void testWriteSingleBytes() throws IOException
+    {
+        byte[] b = data();
+
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        HashingOutputStream out = new HashingOutputStream(target,
+                new Sha256());
+        for (byte x : b) {
+            // only the low 8 bits are written
+            out.write(x | 0x7F00);
+        }
+        out.close();
+
+        assertArrayEquals(b, target.toByteArray());
+        assertArrayEquals(new Sha256().hash(b), out.getHashFunction().finish());
+    }
+
+    @Test
+    public void testWriteArrayWithOffsets() throws IOException
+    {
+        byte[] b = data();
+
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        HashingOutputStream out = new HashingOutputStream(target,
+                new Sha256());
+        out.write(b, 10, 77);
+        out.write(b, 500, 0);
+        out.write(b, 900, 100);
+        out.close();
+
+        byte[] expected = new byte[177];
+        System.arraycopy(b, 10, expected, 0, 77);
+        System.arraycopy(b, 900, expected, 77, 100);
+
+        assertArrayEquals(expected, target.toByteArray());
+        assertArrayEquals(new Sha256().hash(expected),
+                out.getHashFunction().finish());
+    }
+
+    @Test
+    public void testWriteWholeArray() throws IOException
+    {
+        byte[] b = data();
+
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        OutputStream out = new HashingOutputStream(target, new Sha256());
+        out.write(b);
+        out.write(b);
+        out.close();
+
+        byte[] expected = Arrays.copyOf(b, 2 * b.length);
+        System.arraycopy(b, 0, expected, b.length, b.length);
+
+        assertArrayEquals(expected, target.toByteArray());
+        assertArrayEquals(new Sha256().hash(expected),
+                ((HashingOutputStream) out).getHashFunction().finish());
+    }
+
+    @Test
+    public void testInvalidRangeHashesNothing() throws IOException
+    {
+        HashingOutputStream out = new HashingOutputStream(
+                new ByteArrayOutputStream(), new Sha256());
+        out.write(1);
+
+        try {
+            out.write(new byte[10], 5, 6);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+
+        assertArrayEquals(new Sha256().hash(new byte[] { 1 }),
+                out.getHashFunction().finish());
+    }
+
+    @Test
+    public void testFlushAndCloseArePassedOn() throws IOException
+    {
+        RecordingStream target = new RecordingStream();
+        HashingOutputStream out = new HashingOutputStream(target,
+                new Sha256());
+
+        out.write(data());
+        out.flush();
+        assertEquals(1, target.flushed);
+        assertEquals(0, target.closed);
+
+        out.close();
+        assertEquals(1, target.closed);
+        assertEquals(1000, target.size());
+    }
+}
@@ -0,0 +1,215 @@
+package jciph;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.meyfa.jciph.hashing.Hmac;
+import net.meyfa.jciph.hashing.HmacKey;
+import net.meyfa.jciph.hashing.HmacKeyCache;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+
+
+public class HmacTest
+{
+    private static byte[] jdkMac(String algorithm, byte[] key, byte[] message)
+            throws GeneralSecurityException
+    {
+        Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(key, algorithm));
+
+        return mac.doFinal(message);
+    }
+
+    @Test
+    public void testRfc4231()
+    {
+        // test case 2
+        byte[] key = "Jefe".getBytes(StandardCharsets.US_ASCII);
+        byte[] message = "what do ya want for nothing?"
+                .getBytes(StandardCharsets.US_ASCII);
+
+        assertArrayEquals(DatatypeConverter.parseHexBinary(
+                "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843"),
+                new Hmac(new Sha256(), key).hash(message));
+        assertArrayEquals(DatatypeConverter.parseHexBinary(
+                "164b7a7bfcf819e2e395fbe73b56e0a387bd64222e831fd610270cd7ea250554"
+                        + "9758bf75c05a994a6d034f65f8f0e6fdcaeab1a34d4a6b4b636e070a38bce737"),
+                new Hmac(new Sha512(), key).hash(message));
+    }
+
+    @Test
+    public void testMatchesJdk() throws GeneralSecurityException
+    {
+        Random random = new Random(21);
+        Hmac sha256 = new Hmac(new Sha256());
+        Hmac sha512 = new Hmac(new Sha512());
+
+        // includes keys longer than a block, which are hashed first
+        for (int keyLength : new int[] { 1, 20, 64, 65, 128, 129, 300 }) {
+            byte[] key = new byte[keyLength];
+            random.nextBytes(key);
+            sha256.setKey(key);
+            sha512.setKey(key);
+
+            for (int length : new int[] { 0, 1, 55, 56, 64, 111, 112, 1000 }) {
+                byte[] message = new byte[length];
+                random.nextBytes(message);
+
+                assertArrayEquals(jdkMac("HmacSHA256", key, message),
+                        sha256.hash(message));
+                assertArrayEquals(jdkMac("HmacSHA512", key, message),
+                        sha512.hash(message));
+            }
+        }
+    }
+
+    @Test
+    public void testStreaming() throws GeneralSecurityException
+    {
+        byte[] key = new byte[32];
+        byte[] message = new byte[500];
+        new Random(22).nextBytes(message);
+
+        Hmac hmac = new Hmac(new Sha256(), key);
+        hmac.digest(message, 0, 100);
+        hmac.digest(message, 100, 400);
+        byte[] first = hmac.finish();
+
+        // the key is kept after finishing
+        hmac.digest(message);
+        byte[] second = hmac.finish();
+
+        byte[] expected = jdkMac("HmacSHA256", key, message);
+        assertArrayEquals(expected, first);
+        assertArrayEquals(expected, second);
+    }
+
+    @Test
+    public void testVerify()
+    {
+        byte[] key = { 1, 2, 3 };
+        byte[] message = { 4, 5, 6 };
+
+        Hmac hmac = new Hmac(new Sha512(), key);
+        byte[] mac = hmac.hash(message);
+
+        assertTrue(hmac.verify(message, mac));
+        mac[10] ^= 1;
+        assertFalse(hmac.verify(message, mac));
+        assertFalse(hmac.verify(message, new byte[0]));
+    }
+
+    @Test
+    public void testSharedKey()
+    {
+        byte[] message = { 7, 8, 9 };
+        HmacKey key = new HmacKey(new Sha256(), new byte[] { 1, 2, 3 });
+
+        assertArrayEquals(new Hmac(new Sha256(), new byte[] { 1, 2, 3 })
+                .hash(message), new Hmac(new Sha256(), key).hash(message));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsKeyOfOtherFunction()
+    {
+        new Hmac(new Sha512(), new HmacKey(new Sha256(), new byte[16]));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRequiresKey()
+    {
+        new Hmac(new Sha256()).hash(new byte[1]);
+    }
+
+    @Test
+    public void testKeyCache()
+    {
+        HmacKeyCache cache = new HmacKeyCache(Sha256::new, 4);
+
+        HmacKey key = cache.get(new byte[] { 1 });
+        assertSame(key, cache.get(new byte[] { 1 }));
+        assertNotSame(key, cache.get(new byte[] { 2 }));
+
+        byte[] message = { 3 };
+        assertArrayEquals(new Hmac(new Sha256(), new byte[] { 1 })
+                .hash(message), new Hmac(new Sha256(), key).hash(message));
+    }
+
+    @Test
+    public void testKeyCacheEviction()
+    {
+        HmacKeyCache cache = new HmacKeyCache(Sha256::new, 4);
+        for (int i = 0; i < 100; ++i) {
+            cache.get(new byte[] { (byte) i });
+        }
+
+        assertTrue(cache.size() <= 4);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testKeyCacheCapacity()
+    {
+        // not a multiple of the segment count
+        HmacKeyCache cache = new HmacKeyCache(Sha256::new, 17);
+        for (int i = 0; i < 1_000; ++i) {
+            cache.get(new byte[] { (byte) i, (byte) (i >>> 8) });
+            assertTrue(cache.size() <= 17);
+        }
+
+        assertEquals(17, cache.size());
+    }
+
+    @Test
+    public void testKeyCacheCapacityConcurrent() throws Exception
+    {
+        HmacKeyCache cache = new HmacKeyCache(Sha512::new, 17);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; ++t) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    byte[] message = { (byte) thread };
+                    for (int i = 0; i < 200; ++i) {
+                        byte[] key = { (byte) thread, (byte) i };
+                        assertArrayEquals(new Hmac(new Sha512(), key)
+                                .hash(message), new Hmac(new Sha512(),
+                                        cache.get(key)).hash(message));
+                        assertTrue(cache.size() <= 17);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(17, cache.size());
+    }
+}
@@ -0,0 +1,143 @@
+package jciph;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.meyfa.jciph.hashing.MerkleTree;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+import net.meyfa.jciph.hashing.TreeHasher;
+
+
+public class MerkleTreeTest
+{
+    private static final int RECORD_SIZE = 10;
+
+    private static byte[][] split(byte[] data)
+    {
+        int count = Math.max(1, (data.length + RECORD_SIZE - 1) / RECORD_SIZE);
+        byte[][] records = new byte[count][];
+        for (int i = 0; i < count; ++i) {
+            records[i] = Arrays.copyOfRange(data, i * RECORD_SIZE,
+                    Math.min(data.length, (i + 1) * RECORD_SIZE));
+        }
+
+        return records;
+    }
+
+    @Test
+    public void testRootMatchesTreeHasher()
+    {
+        Random random = new Random(121);
+        TreeHasher hasher = new TreeHasher(Sha256::new, RECORD_SIZE);
+
+        for (int leaves = 1; leaves <= 40; ++leaves) {
+            byte[] data = new byte[leaves * RECORD_SIZE - random.nextInt(5)];
+            random.nextBytes(data);
+
+            MerkleTree tree = MerkleTree.build(Sha256::new, split(data));
+            assertEquals(leaves, tree.getLeafCount());
+            assertArrayEquals(hasher.hash(data), tree.getRoot());
+        }
+    }
+
+    @Test
+    public void testParallelLevels()
+    {
+        byte[] data = new byte[50_001 * RECORD_SIZE];
+        new Random(122).nextBytes(data);
+        byte[][] records = split(data);
+
+        MerkleTree sequential = MerkleTree.build(Sha512::new, records,
+                new ForkJoinPool(1));
+        MerkleTree parallel = MerkleTree.build(Sha512::new, records,
+                new ForkJoinPool(4));
+
+        assertArrayEquals(sequential.getRoot(), parallel.getRoot());
+        assertArrayEquals(new TreeHasher(Sha512::new, RECORD_SIZE).hash(data),
+                parallel.getRoot());
+    }
+
+    @Test
+    public void testProofs()
+    {
+        Random random = new Random(123);
+        Sha256 function = new Sha256();
+
+        for (int leaves : new int[] { 1, 2, 3, 7, 8, 13, 64, 100 }) {
+            byte[][] records = new byte[leaves][];
+            for (int i = 0; i < leaves; ++i) {
+                records[i] = new byte[random.nextInt(50)];
+                random.nextBytes(records[i]);
+            }
+
+            MerkleTree tree = MerkleTree.build(Sha256::new, records);
+            byte[] root = tree.getRoot();
+
+            for (int i = 0; i < leaves; ++i) {
+                byte[] proof = tree.getProof(i);
+                assertTrue(MerkleTree.verify(function, root, records[i], i,
+                        leaves, proof));
+
+                byte[] tampered = records[i].clone();
+                tampered = Arrays.copyOf(tampered, tampered.length + 1);
+                assertFalse(MerkleTree.verify(function, root, tampered, i,
+                        leaves, proof));
+                if (leaves > 1) {
+                    int other = (i + 1) % leaves;
+                    assertFalse(MerkleTree.verify(function, root, records[i],
+                            other, leaves, tree.getProof(other)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testProofRejectsWrongLength()
+    {
+        byte[][] records = { { 1 }, { 2 }, { 3 } };
+        MerkleTree tree = MerkleTree.build(Sha256::new, records);
+        byte[] proof = tree.getProof(0);
+
+        assertFalse(MerkleTree.verify(new Sha256(), tree.getRoot(), records[0],
+                0, 3, Arrays.copyOf(proof, proof.length - 1)));
+    }
+
+    @Test
+    public void testFromLeafHashes()
+    {
+        byte[][] records = { { 1 }, { 2 }, { 3 }, { 4 }, { 5 } };
+        MerkleTree tree = MerkleTree.build(Sha256::new, records);
+
+        Sha256 function = new Sha256();
+        byte[] leafHashes = new byte[records.length * 32];
+        for (int i = 0; i < records.length; ++i) {
+            function.digest(new byte[] { 0 });
+            function.digest(records[i]);
+            function.finishInto(leafHashes, i * 32);
+        }
+
+        assertArrayEquals(tree.getRoot(), MerkleTree.fromLeafHashes(
+                Sha256::new, leafHashes, ForkJoinPool.commonPool()).getRoot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmpty()
+    {
+        MerkleTree.build(Sha256::new, new byte[0][]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testProofChecksIndex()
+    {
+        MerkleTree.build(Sha256::new, new byte[][] { { 1 } }).getProof(1);
+    }
+}
@@ -0,0 +1,87 @@
+package jciph;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import net.meyfa.jciph.hashing.BlockHashFunction;
+import net.meyfa.jciph.hashing.HashBackends;
+import net.meyfa.jciph.hashing.MessageDigestFunction;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+
+
+public class MessageDigestFunctionTest
+{
+    @Test
+    public void testMatchesJciph()
+    {
+        Random random = new Random(61);
+        MessageDigestFunction sha256 = MessageDigestFunction.sha256();
+        MessageDigestFunction sha512 = MessageDigestFunction.sha512();
+
+        for (int length : new int[] { 0, 1, 55, 56, 64, 111, 112, 128, 1000 }) {
+            byte[] b = new byte[length];
+            random.nextBytes(b);
+
+            assertArrayEquals(new Sha256().hash(b), sha256.hash(b));
+            assertArrayEquals(new Sha512().hash(b), sha512.hash(b));
+        }
+    }
+
+    @Test
+    public void testStreaming()
+    {
+        byte[] b = new byte[1000];
+        new Random(62).nextBytes(b);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(600);
+        direct.put(b, 400, 600).flip();
+
+        MessageDigestFunction function = MessageDigestFunction.sha256();
+        function.digest(new byte[3]);
+        function.reset();
+        function.digest(b, 0, 400);
+        function.digest(direct);
+
+        byte[] out = new byte[40];
+        assertEquals(32, function.finishInto(out, 8));
+        assertArrayEquals(new Sha256().hash(b), Arrays
+                .copyOfRange(out, 8, 40));
+        assertEquals(600, direct.position());
+    }
+
+    @Test
+    public void testDigestLength()
+    {
+        assertEquals(32, MessageDigestFunction.sha256().getDigestLength());
+        assertEquals(128, MessageDigestFunction.sha512().getBlockSize());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testFinishIntoChecksBounds()
+    {
+        MessageDigestFunction.sha512().finishInto(new byte[64], 1);
+    }
+
+    @Test
+    public void testBackends()
+    {
+        byte[] b = new byte[300];
+        new Random(63).nextBytes(b);
+
+        assertNotNull(HashBackends.getSha256Backend());
+        assertNotNull(HashBackends.getSha512Backend());
+
+        BlockHashFunction sha256 = HashBackends.newSha256();
+        BlockHashFunction sha512 = HashBackends.newSha512();
+        assertArrayEquals(new Sha256().hash(b), sha256.hash(b));
+        assertArrayEquals(new Sha512().hash(b), sha512.hash(b));
+    }
+}
@@ -0,0 +1,121 @@
+package jciph;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.meyfa.jciph.hashing.NonceSearch;
+import net.meyfa.jciph.hashing.Sha256;
+
+
+public class NonceSearchTest
+{
+    private static int leadingZeroBits(byte[] hash)
+    {
+        int bits = 0;
+        for (byte b : hash) {
+            if (b != 0) {
+                return bits + Integer.numberOfLeadingZeros(b & 0xff) - 24;
+            }
+            bits += 8;
+        }
+
+        return bits;
+    }
+
+    private static void checkSmallest(NonceSearch search, long nonce,
+            int difficulty)
+    {
+        Sha256 sha256 = new Sha256();
+
+        assertTrue(nonce >= 0);
+        assertTrue(leadingZeroBits(sha256.hash(search.getMessage(nonce)))
+                >= difficulty);
+        for (long n = 0; n < nonce; ++n) {
+            assertTrue(leadingZeroBits(sha256.hash(search.getMessage(n)))
+                    < difficulty);
+        }
+    }
+
+    @Test
+    public void testFindsSmallestNonce()
+    {
+        Random random = new Random(111);
+
+        // nonce in the first of several blocks, across a block boundary,
+        // at the end with the padding in an extra block, and at the end of
+        // a long message
+        int[][] layouts = { { 200, 10, 4 }, { 150, 62, 4 }, { 60, 56, 4 },
+                { 1000, 992, 8 } };
+        for (int[] layout : layouts) {
+            byte[] template = new byte[layout[0]];
+            random.nextBytes(template);
+
+            NonceSearch search = new NonceSearch(template, layout[1],
+                    layout[2], 12);
+            long nonce = search.find(0, 1 << 20);
+
+            checkSmallest(search, nonce, 12);
+            assertTrue(search.verify(nonce));
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSequential()
+    {
+        byte[] template = new byte[100];
+        new Random(112).nextBytes(template);
+        NonceSearch search = new NonceSearch(template, 90, 4, 18);
+
+        long parallel = search.find(0, 1L << 24, new ForkJoinPool(4));
+        long sequential = search.find(0, 1L << 24, new ForkJoinPool(1));
+
+        assertEquals(sequential, parallel);
+        assertTrue(search.verify(parallel));
+        assertFalse(parallel > 0 && search.verify(parallel - 1));
+    }
+
+    @Test
+    public void testRangeWithoutNonce()
+    {
+        NonceSearch search = new NonceSearch(new byte[40], 0, 1, 256);
+        assertEquals(-1, search.find(0, 256));
+    }
+
+    @Test
+    public void testZeroDifficulty()
+    {
+        NonceSearch search = new NonceSearch(new byte[40], 0, 2, 0);
+        assertEquals(7, search.find(7, 100));
+    }
+
+    @Test
+    public void testGetMessage()
+    {
+        NonceSearch search = new NonceSearch(new byte[6], 1, 3, 1);
+        byte[] message = search.getMessage(0x123456);
+
+        assertEquals(0, message[0]);
+        assertEquals(0x12, message[1]);
+        assertEquals(0x34, message[2]);
+        assertEquals(0x56, message[3]);
+        assertEquals(0, message[4]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsRangeBeyondField()
+    {
+        new NonceSearch(new byte[40], 0, 1, 8).find(0, 257);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRejectsFieldBeyondTemplate()
+    {
+        new NonceSearch(new byte[40], 38, 4, 8);
+    }
+}
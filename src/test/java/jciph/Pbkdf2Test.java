@@ -0,0 +1,79 @@
+package jciph;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import net.meyfa.jciph.hashing.Pbkdf2;
+
+
+public class Pbkdf2Test
+{
+    private static byte[] jdkPbkdf2(String algorithm, String password,
+            byte[] salt, int iterations, int keyLength)
+            throws GeneralSecurityException
+    {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt,
+                iterations, keyLength * Byte.SIZE);
+
+        return SecretKeyFactory.getInstance(algorithm).generateSecret(spec)
+                .getEncoded();
+    }
+
+    @Test
+    public void testKnownAnswer()
+    {
+        byte[] password = "password".getBytes(StandardCharsets.US_ASCII);
+        byte[] salt = "salt".getBytes(StandardCharsets.US_ASCII);
+
+        assertArrayEquals(DatatypeConverter.parseHexBinary(
+                "120fb6cffcf8b32c43e7225256c4f837a86548c92ccc35480805987cb70be17b"),
+                Pbkdf2.hmacSha256(password, salt, 1, 32));
+        assertArrayEquals(DatatypeConverter.parseHexBinary(
+                "c5e478d59288c841aa530db6845c4c8d962893a001ce4e11a4963873aa98134a"),
+                Pbkdf2.hmacSha256(password, salt, 4096, 32));
+    }
+
+    @Test
+    public void testMatchesJdk() throws GeneralSecurityException
+    {
+        Random random = new Random(31);
+        String password = "correct horse battery staple";
+        byte[] salt = new byte[16];
+        random.nextBytes(salt);
+
+        // key lengths of one, several and partial blocks
+        for (int keyLength : new int[] { 16, 32, 64, 100, 200 }) {
+            assertArrayEquals(
+                    jdkPbkdf2("PBKDF2WithHmacSHA256", password, salt, 1000,
+                            keyLength),
+                    Pbkdf2.hmacSha256(password.getBytes(StandardCharsets.UTF_8),
+                            salt, 1000, keyLength));
+            assertArrayEquals(
+                    jdkPbkdf2("PBKDF2WithHmacSHA512", password, salt, 1000,
+                            keyLength),
+                    Pbkdf2.hmacSha512(password.getBytes(StandardCharsets.UTF_8),
+                            salt, 1000, keyLength));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsZeroIterations()
+    {
+        Pbkdf2.hmacSha256(new byte[1], new byte[1], 0, 32);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsZeroKeyLength()
+    {
+        Pbkdf2.hmacSha512(new byte[1], new byte[1], 1, 0);
+    }
+}
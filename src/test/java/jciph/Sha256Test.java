@@ -1,17 +1,32 @@
 package jciph;
 
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
 
 import javax.xml.bind.DatatypeConverter;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
 
 
 public class Sha256Test
@@ -33,6 +48,21 @@ public class Sha256Test
             super.processBlock(block, off);
             ++blocksProcessed;
         }
+
+        /**
+         * Finishes like a subclass that pads through {@code pad}: processes
+         * the padded remainder and returns H, taken from the saved state.
+         */
+        byte[] finishWithPad(byte[] remainder)
+        {
+            byte[] padded = pad(remainder, remainder.length);
+            for (int off = 0; off < padded.length; off += 64) {
+                processBlock(padded, off);
+            }
+
+            // the chaining state follows a 13-byte header and starts with H
+            return Arrays.copyOfRange(saveState(), 13, 13 + 32);
+        }
     }
 
     // hash(byte[])
@@ -114,6 +144,403 @@ public class Sha256Test
         assertArrayEquals(expected, new Sha256().hash(b));
     }
 
+    @Test
+    public void testHashMatchesJdk() throws NoSuchAlgorithmException
+    {
+        MessageDigest jdk = MessageDigest.getInstance("SHA-256");
+        Sha256 instance = new Sha256();
+
+        Random random = new Random(256);
+        for (int length = 0; length <= 300; ++length) {
+            byte[] b = new byte[length];
+            random.nextBytes(b);
+
+            assertArrayEquals("length " + length, jdk.digest(b),
+                    instance.hash(b));
+        }
+    }
+
+    // hashAll(byte[][])
+
+    @Test
+    public void testHashAllMatchesHash()
+    {
+        // mixed lengths, so that lanes finish at different times
+        Random random = new Random(6);
+        byte[][] messages = new byte[301][];
+        for (int i = 0; i < messages.length; ++i) {
+            messages[i] = new byte[(i * 37) % 301];
+            random.nextBytes(messages[i]);
+        }
+
+        byte[][] hashes = Sha256.hashAll(messages);
+
+        assertEquals(messages.length, hashes.length);
+        Sha256 instance = new Sha256();
+        for (int i = 0; i < messages.length; ++i) {
+            assertArrayEquals("message " + i, instance.hash(messages[i]),
+                    hashes[i]);
+        }
+    }
+
+    @Test
+    public void testHashAllFewMessages()
+    {
+        byte[][] messages = { "hello".getBytes(StandardCharsets.US_ASCII),
+                "world".getBytes(StandardCharsets.US_ASCII) };
+
+        byte[][] hashes = Sha256.hashAll(messages);
+
+        assertArrayEquals(DatatypeConverter.parseHexBinary(
+                "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824"),
+                hashes[0]);
+        assertArrayEquals(DatatypeConverter.parseHexBinary(
+                "486ea46224d1bb4fb680f34f7c9ad96a8f24ec88be73ea8e5a6c65260e9cb8a7"),
+                hashes[1]);
+    }
+
+    @Test
+    public void testHashAllEmpty()
+    {
+        assertEquals(0, Sha256.hashAll(new byte[0][]).length);
+    }
+
+    // digest(byte[], int, int)
+
+    @Test
+    public void testSha256d()
+    {
+        Random random = new Random(101);
+        for (int len : new int[] { 0, 1, 55, 56, 63, 64, 65, 119, 120, 1000 }) {
+            byte[] message = new byte[len];
+            random.nextBytes(message);
+
+            byte[] expected = new Sha256().hash(new Sha256().hash(message));
+            assertArrayEquals(expected, Sha256.sha256d(message));
+        }
+    }
+
+    @Test
+    public void testSha256dEveryRemainder()
+    {
+        byte[] b = new byte[200];
+        new Random(103).nextBytes(b);
+
+        byte[] out = new byte[40];
+        for (int len = 0; len <= 2 * 64; ++len) {
+            byte[] message = Arrays.copyOfRange(b, 7, 7 + len);
+            byte[] expected = new Sha256().hash(new Sha256().hash(message));
+
+            Sha256.sha256d(b, 7, len, out, 5);
+            assertArrayEquals(expected, Arrays.copyOfRange(out, 5, 37));
+        }
+    }
+
+    @Test
+    public void testHash32AndHash64()
+    {
+        Random random = new Random(102);
+        byte[] in = new byte[64];
+        random.nextBytes(in);
+
+        assertArrayEquals(new Sha256().hash(Arrays.copyOf(in, 32)),
+                Sha256.hash32(Arrays.copyOf(in, 32)));
+        assertArrayEquals(new Sha256().hash(in), Sha256.hash64(in));
+
+        // in place, at an offset
+        byte[] buf = new byte[100];
+        System.arraycopy(in, 0, buf, 10, 64);
+        Sha256.hash64(buf, 10, buf, 10);
+        assertArrayEquals(new Sha256().hash(in),
+                Arrays.copyOfRange(buf, 10, 42));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHash32RejectsWrongLength()
+    {
+        Sha256.hash32(new byte[31]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testHash64ChecksBounds()
+    {
+        Sha256.hash64(new byte[64], 1, new byte[32], 0);
+    }
+
+    @Test
+    public void testIterate()
+    {
+        byte[] seed = "seed".getBytes(StandardCharsets.US_ASCII);
+        Sha256 sha256 = new Sha256();
+
+        byte[] expected = seed;
+        for (int n = 0; n <= 5; ++n) {
+            assertArrayEquals(expected, Sha256.iterate(seed, n));
+            expected = sha256.hash(expected);
+        }
+    }
+
+    @Test
+    public void testDigestRange()
+    {
+        // raw bytes 0 - 255, surrounded by garbage
+        byte[] b = new byte[3 + 256 + 5];
+        for (int i = 0; i < b.length; ++i) {
+            b[i] = (byte) (i - 3);
+        }
+
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "40aff2e9d2d8922e47afd4648e6967497158785fbd1da870e7110266bf944880");
+
+        Sha256 instance = new Sha256();
+        instance.digest(b, 3, 10);
+        instance.digest(b, 13, 0);
+        instance.digest(b, 13, 200);
+        instance.digest(b, 213, 46);
+
+        assertArrayEquals(expected, instance.finish());
+    }
+
+    // digest(ByteBuffer)
+
+    @Test
+    public void testDigestDirectBuffer()
+    {
+        ByteBuffer buf = ByteBuffer.allocateDirect(256)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 256; ++i) {
+            buf.put((byte) i);
+        }
+        buf.flip();
+
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "40aff2e9d2d8922e47afd4648e6967497158785fbd1da870e7110266bf944880");
+
+        Sha256 instance = new Sha256();
+        buf.limit(10);
+        instance.digest(buf);
+        buf.limit(210);
+        instance.digest(buf);
+        buf.limit(256);
+        instance.digest(buf);
+
+        assertEquals(256, buf.position());
+        assertArrayEquals(expected, instance.finish());
+    }
+
+    @Test
+    public void testDigestHeapBuffer()
+    {
+        byte[] b = new byte[256];
+        for (int i = 0; i < b.length; ++i) {
+            b[i] = (byte) i;
+        }
+
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "40aff2e9d2d8922e47afd4648e6967497158785fbd1da870e7110266bf944880");
+
+        Sha256 instance = new Sha256();
+        instance.digest(ByteBuffer.wrap(b, 0, 100).slice());
+        instance.digest(ByteBuffer.wrap(b, 100, 156));
+
+        assertArrayEquals(expected, instance.finish());
+    }
+
+    // hash(byte[], int, int, byte[], int)
+
+    @Test
+    public void testHashIntoArray()
+    {
+        byte[] b = "xxHello world!x".getBytes(StandardCharsets.US_ASCII);
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "c0535e4be2b79ffd93291305436bf889314e4a3faec05ecffcbb7df31ad9e51a");
+
+        byte[] out = new byte[32 + 4];
+        int written = new Sha256().hash(b, 2, 12, out, 3);
+
+        assertEquals(32, written);
+        assertArrayEquals(expected, Arrays.copyOfRange(out, 3, 3 + 32));
+        assertEquals(0, out[2]);
+        assertEquals(0, out[3 + 32]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testHashIntoArrayChecksBounds()
+    {
+        new Sha256().hash(new byte[8], 0, 8, new byte[32], 1);
+    }
+
+    // finishInto(byte[], int)
+
+    @Test
+    public void testFinishIntoTwoBlocks()
+    {
+        byte[] b = new byte[55];
+        for (int i = 0; i < b.length; ++i) {
+            b[i] = (byte) 'a';
+        }
+
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "9f4390f8d30c2dd92ec9f095b65e2b9ae9b0a925a5258e241c9f1e910f734318");
+
+        Sha256 instance = new Sha256();
+        instance.digest(b);
+
+        byte[] out = new byte[32];
+        instance.finishInto(out, 0);
+
+        assertArrayEquals(expected, out);
+    }
+
+    @Test
+    public void testFinishIntoResets()
+    {
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "c0535e4be2b79ffd93291305436bf889314e4a3faec05ecffcbb7df31ad9e51a");
+
+        Sha256 instance = new Sha256();
+        instance.digest(new byte[300]);
+        instance.finishInto(new byte[32], 0);
+
+        instance.digest("Hello world!".getBytes(StandardCharsets.US_ASCII));
+
+        assertArrayEquals(expected, instance.finish());
+    }
+
+    // hashFile(Path), hash(FileChannel, long, long)
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHashFile() throws IOException
+    {
+        Path file = folder.newFile().toPath();
+        Files.write(file, "Hello world!".getBytes(StandardCharsets.US_ASCII));
+
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "c0535e4be2b79ffd93291305436bf889314e4a3faec05ecffcbb7df31ad9e51a");
+
+        assertArrayEquals(expected, new Sha256().hashFile(file));
+    }
+
+    @Test
+    public void testHashFileEmpty() throws IOException
+    {
+        Path file = folder.newFile().toPath();
+
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+
+        assertArrayEquals(expected, new Sha256().hashFile(file));
+    }
+
+    @Test
+    public void testHashFileMultipleWindows()
+            throws IOException, NoSuchAlgorithmException
+    {
+        // larger than one mapping window, with data around the window border
+        File file = folder.newFile();
+        long size = 65L * 1024 * 1024 + 7;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+            raf.seek(64L * 1024 * 1024 - 3);
+            raf.write(new byte[] { 1, 2, 3, 4, 5, 6 });
+        }
+
+        MessageDigest jdk = MessageDigest.getInstance("SHA-256");
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+            while (channel.read(buf) > 0) {
+                buf.flip();
+                jdk.update(buf);
+                buf.clear();
+            }
+        }
+
+        assertArrayEquals(jdk.digest(), new Sha256().hashFile(file.toPath()));
+    }
+
+    @Test
+    public void testHashFileRegion() throws IOException
+    {
+        Path file = folder.newFile().toPath();
+        Files.write(file, "xxHello world!x".getBytes(StandardCharsets.US_ASCII));
+
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "c0535e4be2b79ffd93291305436bf889314e4a3faec05ecffcbb7df31ad9e51a");
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertArrayEquals(expected, new Sha256().hash(channel, 2, 12));
+            assertEquals(0, channel.position());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testHashFileRegionBeyondEnd() throws IOException
+    {
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[10]);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            new Sha256().hash(channel, 5, 6);
+        }
+    }
+
+    // saveState(), restoreState(byte[])
+
+    @Test
+    public void testRestoreStateResumes()
+    {
+        byte[] b = new byte[1000];
+        new Random(41).nextBytes(b);
+
+        // split inside a block, so that bytes are buffered
+        Sha256 first = new Sha256();
+        first.digest(b, 0, 300);
+        byte[] state = first.saveState();
+
+        Sha256 second = new Sha256();
+        second.digest(new byte[17]);
+        second.restoreState(state);
+        second.digest(b, 300, 700);
+
+        assertArrayEquals(new Sha256().hash(b), second.finish());
+
+        // saving does not modify the original
+        first.digest(b, 300, 700);
+        assertArrayEquals(new Sha256().hash(b), first.finish());
+    }
+
+    @Test
+    public void testRestoreStateAtBlockBoundary()
+    {
+        byte[] b = new byte[64 * 3];
+        new Random(42).nextBytes(b);
+
+        Sha256 function = new Sha256();
+        function.digest(b, 0, 64 * 2);
+        byte[] state = function.saveState();
+
+        function.restoreState(state);
+        function.digest(b, 64 * 2, 64);
+
+        assertArrayEquals(new Sha256().hash(b), function.finish());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRestoreStateRejectsOtherFunction()
+    {
+        new Sha256().restoreState(new Sha512().saveState());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRestoreStateRejectsTruncated()
+    {
+        byte[] state = new Sha256().saveState();
+        new Sha256().restoreState(Arrays.copyOf(state, state.length - 1));
+    }
+
     // finish()
 
     @Test
@@ -159,6 +586,28 @@ public class Sha256Test
         }
     }
 
+    @Test
+    public void testPadKnownAnswer() throws NoSuchAlgorithmException
+    {
+        MessageDigest jdk = MessageDigest.getInstance("SHA-256");
+        Random random = new Random(71);
+
+        // a processed block followed by remainders of all kinds
+        for (int length : new int[] { 0, 3, 32, 63 }) {
+            byte[] block = new byte[64];
+            byte[] remainder = new byte[length];
+            random.nextBytes(block);
+            random.nextBytes(remainder);
+
+            MockSha256 mock = new MockSha256();
+            mock.digest(block);
+
+            jdk.update(block);
+            assertArrayEquals("length " + length, jdk.digest(remainder),
+                    mock.finishWithPad(remainder));
+        }
+    }
+
     @Test
     public void testPaddingHasTotalSize()
     {
@@ -2,7 +2,12 @@ package jciph;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -12,6 +17,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import net.meyfa.jciph.hashing.Sha256;
 import net.meyfa.jciph.hashing.Sha512;
 
 
@@ -34,6 +40,21 @@ public class Sha512Test
             super.processBlock(block, off);
             ++blocksProcessed;
         }
+
+        /**
+         * Finishes like a subclass that pads through {@code pad}: processes
+         * the padded remainder and returns H, taken from the saved state.
+         */
+        byte[] finishWithPad(byte[] remainder)
+        {
+            byte[] padded = pad(remainder, remainder.length);
+            for (int off = 0; off < padded.length; off += 128) {
+                processBlock(padded, off);
+            }
+
+            // the chaining state follows a 13-byte header and starts with H
+            return Arrays.copyOfRange(saveState(), 13, 13 + 64);
+        }
     }
 
     // hash(byte[])
@@ -115,6 +136,205 @@ public class Sha512Test
         assertArrayEquals(expected, new Sha512().hash(b));
     }
 
+    @Test
+    public void testHashMatchesJdk() throws NoSuchAlgorithmException
+    {
+        MessageDigest jdk = MessageDigest.getInstance("SHA-512");
+        Sha512 instance = new Sha512();
+
+        Random random = new Random(512);
+        for (int length = 0; length <= 600; ++length) {
+            byte[] b = new byte[length];
+            random.nextBytes(b);
+
+            assertArrayEquals("length " + length, jdk.digest(b),
+                    instance.hash(b));
+        }
+    }
+
+    // digest(byte[], int, int)
+
+    @Test
+    public void testDigestRange()
+    {
+        // raw bytes 0 - 255, surrounded by garbage
+        byte[] b = new byte[3 + 256 + 5];
+        for (int i = 0; i < b.length; ++i) {
+            b[i] = (byte) (i - 3);
+        }
+
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "1e7b80bc8edc552c8feeb2780e111477e5bc70465fac1a77b29b35980c3f0ce4a036a6c9462036824bd56801e62af7e9feba5c22ed8a5af877bf7de117dcac6d");
+
+        Sha512 instance = new Sha512();
+        instance.digest(b, 3, 10);
+        instance.digest(b, 13, 0);
+        instance.digest(b, 13, 200);
+        instance.digest(b, 213, 46);
+
+        assertArrayEquals(expected, instance.finish());
+    }
+
+    // digest(ByteBuffer)
+
+    @Test
+    public void testDigestDirectBuffer()
+    {
+        ByteBuffer buf = ByteBuffer.allocateDirect(256)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 256; ++i) {
+            buf.put((byte) i);
+        }
+        buf.flip();
+
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "1e7b80bc8edc552c8feeb2780e111477e5bc70465fac1a77b29b35980c3f0ce4a036a6c9462036824bd56801e62af7e9feba5c22ed8a5af877bf7de117dcac6d");
+
+        Sha512 instance = new Sha512();
+        buf.limit(10);
+        instance.digest(buf);
+        buf.limit(210);
+        instance.digest(buf);
+        buf.limit(256);
+        instance.digest(buf);
+
+        assertEquals(256, buf.position());
+        assertArrayEquals(expected, instance.finish());
+    }
+
+    @Test
+    public void testDigestHeapBuffer()
+    {
+        byte[] b = new byte[256];
+        for (int i = 0; i < b.length; ++i) {
+            b[i] = (byte) i;
+        }
+
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "1e7b80bc8edc552c8feeb2780e111477e5bc70465fac1a77b29b35980c3f0ce4a036a6c9462036824bd56801e62af7e9feba5c22ed8a5af877bf7de117dcac6d");
+
+        Sha512 instance = new Sha512();
+        instance.digest(ByteBuffer.wrap(b, 0, 100).slice());
+        instance.digest(ByteBuffer.wrap(b, 100, 156));
+
+        assertArrayEquals(expected, instance.finish());
+    }
+
+    // hash(byte[], int, int, byte[], int)
+
+    @Test
+    public void testHashIntoArray()
+    {
+        byte[] b = "xxHello world!x".getBytes(StandardCharsets.US_ASCII);
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "f6cde2a0f819314cdde55fc227d8d7dae3d28cc556222a0a8ad66d91ccad4aad6094f517a2182360c9aacf6a3dc323162cb6fd8cdffedb0fe038f55e85ffb5b6");
+
+        byte[] out = new byte[64 + 4];
+        int written = new Sha512().hash(b, 2, 12, out, 3);
+
+        assertEquals(64, written);
+        assertArrayEquals(expected, Arrays.copyOfRange(out, 3, 3 + 64));
+        assertEquals(0, out[2]);
+        assertEquals(0, out[3 + 64]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testHashIntoArrayChecksBounds()
+    {
+        new Sha512().hash(new byte[8], 0, 8, new byte[64], 1);
+    }
+
+    // finishInto(byte[], int)
+
+    @Test
+    public void testFinishIntoTwoBlocks()
+    {
+        byte[] b = new byte[111];
+        for (int i = 0; i < b.length; ++i) {
+            b[i] = (byte) 'a';
+        }
+
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "fa9121c7b32b9e01733d034cfc78cbf67f926c7ed83e82200ef86818196921760b4beff48404df811b953828274461673c68d04e297b0eb7b2b4d60fc6b566a2");
+
+        Sha512 instance = new Sha512();
+        instance.digest(b);
+
+        byte[] out = new byte[64];
+        instance.finishInto(out, 0);
+
+        assertArrayEquals(expected, out);
+    }
+
+    @Test
+    public void testFinishIntoResets()
+    {
+        byte[] expected = DatatypeConverter.parseHexBinary(
+                "f6cde2a0f819314cdde55fc227d8d7dae3d28cc556222a0a8ad66d91ccad4aad6094f517a2182360c9aacf6a3dc323162cb6fd8cdffedb0fe038f55e85ffb5b6");
+
+        Sha512 instance = new Sha512();
+        instance.digest(new byte[300]);
+        instance.finishInto(new byte[64], 0);
+
+        instance.digest("Hello world!".getBytes(StandardCharsets.US_ASCII));
+
+        assertArrayEquals(expected, instance.finish());
+    }
+
+    // saveState(), restoreState(byte[])
+
+    @Test
+    public void testRestoreStateResumes()
+    {
+        byte[] b = new byte[1000];
+        new Random(41).nextBytes(b);
+
+        // split inside a block, so that bytes are buffered
+        Sha512 first = new Sha512();
+        first.digest(b, 0, 300);
+        byte[] state = first.saveState();
+
+        Sha512 second = new Sha512();
+        second.digest(new byte[17]);
+        second.restoreState(state);
+        second.digest(b, 300, 700);
+
+        assertArrayEquals(new Sha512().hash(b), second.finish());
+
+        // saving does not modify the original
+        first.digest(b, 300, 700);
+        assertArrayEquals(new Sha512().hash(b), first.finish());
+    }
+
+    @Test
+    public void testRestoreStateAtBlockBoundary()
+    {
+        byte[] b = new byte[128 * 3];
+        new Random(42).nextBytes(b);
+
+        Sha512 function = new Sha512();
+        function.digest(b, 0, 128 * 2);
+        byte[] state = function.saveState();
+
+        function.restoreState(state);
+        function.digest(b, 128 * 2, 128);
+
+        assertArrayEquals(new Sha512().hash(b), function.finish());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRestoreStateRejectsOtherFunction()
+    {
+        new Sha512().restoreState(new Sha256().saveState());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRestoreStateRejectsTruncated()
+    {
+        byte[] state = new Sha512().saveState();
+        new Sha512().restoreState(Arrays.copyOf(state, state.length - 1));
+    }
+
     // finish()
 
     @Test
@@ -160,6 +380,28 @@ public class Sha512Test
         }
     }
 
+    @Test
+    public void testPadKnownAnswer() throws NoSuchAlgorithmException
+    {
+        MessageDigest jdk = MessageDigest.getInstance("SHA-512");
+        Random random = new Random(135);
+
+        // a processed block followed by remainders of all kinds
+        for (int length : new int[] { 0, 3, 64, 127 }) {
+            byte[] block = new byte[128];
+            byte[] remainder = new byte[length];
+            random.nextBytes(block);
+            random.nextBytes(remainder);
+
+            MockSha512 mock = new MockSha512();
+            mock.digest(block);
+
+            jdk.update(block);
+            assertArrayEquals("length " + length, jdk.digest(remainder),
+                    mock.finishWithPad(remainder));
+        }
+    }
+
     @Test
     public void testPaddingHasTotalSize()
     {
@@ -0,0 +1,141 @@
+package jciph;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+import net.meyfa.jciph.hashing.StreamingTreeHasher;
+import net.meyfa.jciph.hashing.TreeHasher;
+
+
+public class TreeHasherTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] concat(byte[]... parts)
+    {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+
+        byte[] result = new byte[length];
+        int off = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, off, part.length);
+            off += part.length;
+        }
+
+        return result;
+    }
+
+    private static byte[] leaf(byte[] data, int from, int to)
+    {
+        byte[] chunk = new byte[to - from];
+        System.arraycopy(data, from, chunk, 0, chunk.length);
+
+        return new Sha256().hash(concat(new byte[] { 0x00 }, chunk));
+    }
+
+    private static byte[] node(byte[] left, byte[] right)
+    {
+        return new Sha256().hash(concat(new byte[] { 0x01 }, left, right));
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        byte[] expected = new Sha256().hash(new byte[] { 0x00 });
+
+        assertArrayEquals(expected, new TreeHasher(Sha256::new, 16)
+                .hash(new byte[0]));
+        assertArrayEquals(expected, new StreamingTreeHasher(new Sha256(), 16)
+                .hash(new byte[0]));
+    }
+
+    @Test
+    public void testShape()
+    {
+        byte[] b = new byte[40];
+        new Random(11).nextBytes(b);
+
+        // three chunks: the third is promoted to the second level
+        byte[] expected = node(node(leaf(b, 0, 16), leaf(b, 16, 32)),
+                leaf(b, 32, 40));
+
+        assertArrayEquals(expected, new TreeHasher(Sha256::new, 16).hash(b));
+        assertArrayEquals(expected, new StreamingTreeHasher(new Sha256(), 16)
+                .hash(b));
+    }
+
+    @Test
+    public void testDiffersFromPlainHash()
+    {
+        byte[] b = new byte[100];
+        new Random(12).nextBytes(b);
+
+        assertFalse(Arrays.equals(new Sha256().hash(b),
+                new TreeHasher(Sha256::new, 1024).hash(b)));
+    }
+
+    @Test
+    public void testMatchesStreaming()
+    {
+        Random random = new Random(13);
+        TreeHasher tree = new TreeHasher(Sha512::new, 64);
+        StreamingTreeHasher streaming = new StreamingTreeHasher(new Sha512(),
+                64);
+
+        for (int length : new int[] { 1, 63, 64, 65, 128, 191, 192, 1000,
+                64 * 33, 64 * 64 + 1 }) {
+            byte[] b = new byte[length];
+            random.nextBytes(b);
+
+            byte[] expected = tree.hash(b);
+
+            // feed in pieces that do not line up with the chunks
+            for (int off = 0; off < length;) {
+                int len = Math.min(length - off, 1 + random.nextInt(150));
+                streaming.digest(b, off, len);
+                off += len;
+            }
+
+            assertArrayEquals("length " + length, expected, streaming.finish());
+        }
+    }
+
+    @Test
+    public void testHashFile() throws IOException
+    {
+        Random random = new Random(14);
+        byte[] b = new byte[100_000];
+        random.nextBytes(b);
+
+        Path file = folder.newFile().toPath();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(b);
+        }
+
+        TreeHasher tree = new TreeHasher(Sha256::new, 4096);
+        assertArrayEquals(tree.hash(b), tree.hashFile(file));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsInvalidChunkSize()
+    {
+        new TreeHasher(Sha256::new, 0);
+    }
+}
@@ -0,0 +1,129 @@
+package jciph;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import net.meyfa.jciph.hashing.MemorySegments;
+import net.meyfa.jciph.hashing.Sha256;
+import net.meyfa.jciph.hashing.Sha512;
+
+
+public class MemorySegmentsIT
+{
+    private static byte[] random(int length, long seed)
+    {
+        byte[] b = new byte[length];
+        new Random(seed).nextBytes(b);
+
+        return b;
+    }
+
+    private static MemorySegment copyToNative(Arena arena, byte[] b)
+    {
+        MemorySegment segment = arena.allocate(b.length);
+        MemorySegment.copy(b, 0, segment, ValueLayout.JAVA_BYTE, 0, b.length);
+
+        return segment;
+    }
+
+    @Test
+    public void testNativeSegment()
+    {
+        try (Arena arena = Arena.ofConfined()) {
+            for (int len : new int[] { 0, 1, 63, 64, 65, 127, 128, 10_000 }) {
+                byte[] b = random(len, 91);
+                MemorySegment segment = copyToNative(arena, b);
+
+                assertArrayEquals(new Sha256().hash(b),
+                        MemorySegments.hash(new Sha256(), segment));
+                assertArrayEquals(new Sha512().hash(b),
+                        MemorySegments.hash(new Sha512(), segment));
+            }
+        }
+    }
+
+    @Test
+    public void testSegmentLargerThanWindow()
+    {
+        // the windows are 64 MiB; this spans two, the second one partial
+        byte[] b = random(64 * 1024 * 1024 + 1000, 92);
+
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment segment = copyToNative(arena, b);
+
+            assertArrayEquals(new Sha256().hash(b),
+                    MemorySegments.hash(new Sha256(), segment));
+            assertArrayEquals(new Sha512().hash(b),
+                    MemorySegments.hash(new Sha512(), segment));
+        }
+    }
+
+    @Test
+    public void testByteArraySegment()
+    {
+        byte[] b = random(10_000, 93);
+
+        assertArrayEquals(new Sha256().hash(b),
+                MemorySegments.hash(new Sha256(), MemorySegment.ofArray(b)));
+
+        // a slice that does not start at the array's first byte
+        MemorySegment slice = MemorySegment.ofArray(b).asSlice(7, 5_000);
+        byte[] expected = new Sha512().hash(slice.toArray(
+                ValueLayout.JAVA_BYTE));
+        assertArrayEquals(expected, MemorySegments.hash(new Sha512(), slice));
+    }
+
+    @Test
+    public void testNonByteArraySegment()
+    {
+        // larger than one copy chunk, and not a multiple of it
+        int[] ints = new int[5_000];
+        Random random = new Random(94);
+        for (int i = 0; i < ints.length; ++i) {
+            ints[i] = random.nextInt();
+        }
+
+        MemorySegment segment = MemorySegment.ofArray(ints);
+        byte[] b = segment.toArray(ValueLayout.JAVA_BYTE);
+
+        assertArrayEquals(new Sha256().hash(b),
+                MemorySegments.hash(new Sha256(), segment));
+        assertArrayEquals(new Sha512().hash(b),
+                MemorySegments.hash(new Sha512(), segment));
+    }
+
+    @Test
+    public void testDigestAfterOtherData()
+    {
+        byte[] head = random(100, 95);
+        byte[] tail = random(1_000, 96);
+        byte[] b = new byte[head.length + tail.length];
+        System.arraycopy(head, 0, b, 0, head.length);
+        System.arraycopy(tail, 0, b, head.length, tail.length);
+
+        try (Arena arena = Arena.ofConfined()) {
+            Sha256 function = new Sha256();
+            function.digest(head);
+            MemorySegments.digest(function, copyToNative(arena, tail));
+
+            assertArrayEquals(new Sha256().hash(b), function.finish());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedSegment()
+    {
+        MemorySegment segment;
+        try (Arena arena = Arena.ofConfined()) {
+            segment = arena.allocate(100);
+        }
+
+        MemorySegments.hash(new Sha256(), segment);
+    }
+}